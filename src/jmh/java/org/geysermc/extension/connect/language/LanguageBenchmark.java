@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.language;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiled language templates against the map lookup and String.format they replaced
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanguageBenchmark {
+    private static final Map<String, String> MESSAGES = Map.of(
+        "ui.title.main_menu", "Main Menu",
+        "ui.content.page", "Page %s of %s",
+        "ui.content.delete_server", "Are you sure you want to delete %s?");
+
+    private Language language;
+    private Map<String, String> legacyCurrent;
+    private Map<String, String> legacyDefault;
+
+    @Setup
+    public void setup() {
+        Map<String, Integer> keys = new HashMap<>();
+        MessageTemplate[] templates = new MessageTemplate[MESSAGES.size()];
+        for (Map.Entry<String, String> message : MESSAGES.entrySet()) {
+            keys.put(message.getKey(), keys.size());
+            templates[keys.get(message.getKey())] = MessageTemplate.compile(message.getValue());
+        }
+        language = new Language("en_US", keys, templates);
+
+        legacyCurrent = new HashMap<>(MESSAGES);
+        legacyDefault = new HashMap<>(MESSAGES);
+    }
+
+    @Benchmark
+    public String staticMessage() {
+        return language.get("ui.title.main_menu");
+    }
+
+    @Benchmark
+    public String formattedMessage() {
+        return language.getMessage("ui.content.page", 2, 14);
+    }
+
+    @Benchmark
+    public String legacyStaticMessage() {
+        return legacyGetMessage("ui.title.main_menu");
+    }
+
+    @Benchmark
+    public String legacyFormattedMessage() {
+        return legacyGetMessage("ui.content.page", 2, 14);
+    }
+
+    // The lookup LanguageManager.getMessage did before languages were compiled
+    private String legacyGetMessage(String key, Object... args) {
+        String message = legacyCurrent.getOrDefault(key, key);
+        if (message.equals(key) && legacyCurrent != legacyDefault) {
+            message = legacyDefault.getOrDefault(key, key);
+        }
+
+        if (args.length > 0) {
+            message = String.format(message, args);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+package org.geysermc.extension.connect.ui;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.geysermc.cumulus.form.Form;
+import org.geysermc.cumulus.form.SimpleForm;
+import org.geysermc.cumulus.response.SimpleFormResponse;
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.config.Config;
+import org.geysermc.extension.connect.dns.SpeculativeWarmup;
+import org.geysermc.extension.connect.jfr.FormEvent;
+import org.geysermc.extension.connect.language.Language;
+import org.geysermc.extension.connect.language.MessageTemplate;
+import org.geysermc.extension.connect.metrics.Metrics;
+import org.geysermc.extension.connect.reload.Snapshot;
+import org.geysermc.extension.connect.utils.Server;
+import org.geysermc.extension.connect.utils.ServerCategory;
+import org.geysermc.extension.connect.utils.ServerDirectory;
+import org.geysermc.geyser.api.extension.Extension;
+import org.geysermc.geyser.api.extension.ExtensionLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One menu action, a player on the first page of Geyser servers clicking next page, handled by a real
+ * UIHandler and the SERVERS screen compared to the way UIHandler did it before the menu moved to MenuState,
+ * with new handlers made for every form. GeyserSession can't be made outside of Geyser, so both keep the
+ * form instead of sending it and have no session, which is only used once a server is picked.
+ * Run with {@code -PjmhArgs="MenuActionBenchmark -prof gc"} and compare gc.alloc.rate.norm for the bytes each action allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MenuActionBenchmark {
+    private static final Map<String, String> MESSAGES = Map.of(
+        "ui.title.servers", "%s",
+        "ui.content.page", "Page %s of %s",
+        "ui.button.previous_page", "Previous page",
+        "ui.button.next_page", "Next page",
+        "ui.button.back", "Back");
+
+    private Language language;
+    private UIHandler menu;
+    private ServerPage firstPage;
+    private SimpleFormResponse nextPage;
+    private Consumer<SimpleFormResponse> legacyFirstPage;
+    // Where forms and anything else the menu would have sent end up, so none of the work can be skipped
+    private Object sink;
+
+    @Setup
+    public void setup() throws Exception {
+        List<Server> servers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            servers.add(new Server("server" + i + ".example.com", 19132, true, true, "Server " + i, null, ServerCategory.GEYSER));
+        }
+
+        // Just enough of GeyserConnect for the menu, speculation is off so the missing session is never used
+        GeyserConnect geyserConnect = new GeyserConnect();
+        Config config;
+        try (InputStream input = GeyserConnect.class.getResourceAsStream("/config.yml")) {
+            config = new ObjectMapper(new YAMLFactory()).disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).readValue(input, Config.class);
+        }
+        ServerDirectory directory = ServerDirectory.load(extension(), servers, null);
+        set(geyserConnect, "snapshot", new Snapshot(config, directory, null, null, ""));
+        set(geyserConnect, "speculativeWarmup", new SpeculativeWarmup(null, false, 0));
+
+        language = language();
+        menu = new UIHandler(null, null, new SessionBudget(null)) {
+            @Override
+            boolean deliver(Form form) {
+                sink = form;
+                return true;
+            }
+
+            @Override
+            Language language() {
+                return MenuActionBenchmark.this.language;
+            }
+        };
+
+        menu.showServers(ServerCategory.GEYSER, 0);
+        firstPage = menu.shown();
+        nextPage = click(firstPage.servers().size() + (firstPage.hasPrevious() ? 1 : 0));
+        legacyFirstPage = legacyServersMenu(ServerCategory.GEYSER, 0);
+    }
+
+    @Benchmark
+    public void menuState() {
+        // Answer the first page every time instead of walking off the end
+        menu.shown(firstPage);
+        MenuState.SERVERS.valid(menu, nextPage);
+    }
+
+    @Benchmark
+    public void legacy() {
+        legacyFirstPage.accept(nextPage);
+    }
+
+    // UIHandler.sendServersMenu before the menu moved to MenuState, returning the click handler it gave the form
+    private Consumer<SimpleFormResponse> legacyServersMenu(ServerCategory category, int page) {
+        Language lang = language;
+
+        SimpleForm.Builder serversMenu = SimpleForm.builder()
+            .title(lang.getMessage("ui.title.servers", category.title() + " Servers"));
+
+        ServerPage serverPage = ServerPages.page(category, page);
+
+        if (serverPage.pageCount() > 1) {
+            serversMenu.content(lang.getMessage("ui.content.page", serverPage.pageNumber(), serverPage.pageCount()));
+        }
+
+        List<Server> servers = serverPage.servers();
+        for (Server server : servers) {
+            serversMenu.button(server.title(), server.formImage());
+        }
+
+        GeyserConnect.instance().speculativeWarmup().onMenuOpen(null, servers);
+
+        int nextId = servers.size();
+        int previousButton = serverPage.hasPrevious() ? nextId++ : -1;
+        int nextButton = serverPage.hasNext() ? nextId++ : -1;
+        int editButton = category == ServerCategory.CUSTOM ? nextId++ : -1;
+        int backButton = nextId;
+
+        if (previousButton != -1) {
+            serversMenu.button(lang.get("ui.button.previous_page"));
+        }
+
+        if (nextButton != -1) {
+            serversMenu.button(lang.get("ui.button.next_page"));
+        }
+
+        if (editButton != -1) {
+            serversMenu.button(lang.get("ui.button.edit_servers"));
+        }
+
+        // Only next page is clicked, the other menus it could send are kept instead
+        Consumer<SimpleFormResponse> valid = response -> {
+            int clickedId = response.clickedButtonId();
+            if (clickedId < servers.size()) {
+                sink = servers.get(clickedId);
+            } else if (clickedId == previousButton) {
+                legacyServersMenu(category, serverPage.page() - 1);
+            } else if (clickedId == nextButton) {
+                legacyServersMenu(category, serverPage.page() + 1);
+            } else if (clickedId == editButton) {
+                sink = editButton;
+            } else if (clickedId == backButton) {
+                sink = backButton;
+            }
+        };
+
+        serversMenu
+            .button(lang.get("ui.button.back"))
+            .closedOrInvalidResultHandler(response -> {
+                sink = backButton;
+            })
+            .validResultHandler(valid);
+
+        // UIHandler.sendForm as it was then
+        FormEvent event = new FormEvent();
+        event.begin();
+        Form form = serversMenu.build();
+        Metrics.FORMS_SENT.increment();
+        sink = form;
+        if (event.shouldCommit()) {
+            event.formType = form.getClass().getSimpleName();
+            event.title = form.title();
+            event.sent = true;
+            event.commit();
+        }
+
+        return valid;
+    }
+
+    private static Language language() throws ReflectiveOperationException {
+        Map<String, Integer> keys = new HashMap<>();
+        MessageTemplate[] templates = new MessageTemplate[MESSAGES.size()];
+        for (Map.Entry<String, String> message : MESSAGES.entrySet()) {
+            keys.put(message.getKey(), keys.size());
+            templates[keys.get(message.getKey())] = MessageTemplate.compile(message.getValue());
+        }
+
+        Constructor<Language> constructor = Language.class.getDeclaredConstructor(String.class, Map.class, MessageTemplate[].class);
+        constructor.setAccessible(true);
+        return constructor.newInstance("en_US", keys, templates);
+    }
+
+    private static SimpleFormResponse click(int buttonId) {
+        return (SimpleFormResponse) Proxy.newProxyInstance(SimpleFormResponse.class.getClassLoader(), new Class<?>[] {SimpleFormResponse.class}, (proxy, method, args) -> switch (method.getName()) {
+            case "clickedButtonId" -> buttonId;
+            case "hashCode" -> buttonId;
+            case "equals" -> proxy == args[0];
+            case "toString" -> "Click " + buttonId;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private static Extension extension() {
+        InvocationHandler ignore = (proxy, method, args) -> method.getReturnType() == boolean.class ? false : null;
+        ExtensionLogger logger = (ExtensionLogger) Proxy.newProxyInstance(ExtensionLogger.class.getClassLoader(), new Class<?>[] {ExtensionLogger.class}, ignore);
+        return (Extension) Proxy.newProxyInstance(Extension.class.getClassLoader(), new Class<?>[] {Extension.class},
+            (proxy, method, args) -> method.getName().equals("logger") ? logger : ignore.invoke(proxy, method, args));
+    }
+
+    private static void set(GeyserConnect geyserConnect, String name, Object value) throws ReflectiveOperationException {
+        Field field = GeyserConnect.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(geyserConnect, value);
+    }
+}
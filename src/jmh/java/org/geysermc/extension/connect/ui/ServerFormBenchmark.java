@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ui;
+
+import org.geysermc.cumulus.form.SimpleForm;
+import org.geysermc.extension.connect.utils.Server;
+import org.geysermc.extension.connect.utils.ServerCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a page of the servers menu the way the SERVERS screen in MenuState does
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerFormBenchmark {
+    @Param({"10", "1000"})
+    public int servers;
+
+    private List<Server> list;
+    private ServerPage cachedPage;
+
+    @Setup
+    public void setup() {
+        list = new ArrayList<>();
+        for (int i = 0; i < servers; i++) {
+            list.add(new Server("server" + i + ".example.com", 19132, true, true, "Server " + i, null, ServerCategory.GEYSER));
+        }
+        cachedPage = ServerPage.of(list, 0, ServerPages.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SimpleForm cachedPage() {
+        return build(cachedPage);
+    }
+
+    @Benchmark
+    public SimpleForm uncachedPage() {
+        return build(ServerPage.of(list, 0, ServerPages.DEFAULT_PAGE_SIZE));
+    }
+
+    private static SimpleForm build(ServerPage page) {
+        SimpleForm.Builder form = SimpleForm.builder()
+            .title("Geyser Servers")
+            .content("Page " + page.pageNumber() + " of " + page.pageCount());
+
+        for (Server server : page.servers()) {
+            form.button(server.title(), server.formImage());
+        }
+
+        if (page.hasNext()) {
+            form.button("Next page");
+        }
+
+        return form
+            .button("Back")
+            .build();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.utils;
+
+import org.geysermc.api.connection.Connection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ServerManager lookups and edits with several event loops using it at once, each for its own players
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ServerManagerBenchmark {
+    private static final int PLAYERS_PER_THREAD = 1000;
+    private static final Server SERVER = new Server("play.example.com", 25565, true, false, "Example", null, ServerCategory.CUSTOM);
+
+    @State(Scope.Thread)
+    public static class Players {
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        private Connection[] sessions;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int thread = threads.getAndIncrement();
+
+            sessions = new Connection[PLAYERS_PER_THREAD];
+            for (int i = 0; i < sessions.length; i++) {
+                sessions[i] = connection(String.valueOf(thread * PLAYERS_PER_THREAD + i));
+
+                List<Server> servers = new ArrayList<>();
+                for (int j = 0; j < 5; j++) {
+                    servers.add(new Server("custom" + j + ".example.com", 25565, true, false, null, null, ServerCategory.CUSTOM));
+                }
+                ServerManager.setServers(sessions[i], servers);
+            }
+        }
+
+        private Connection next() {
+            return sessions[ThreadLocalRandom.current().nextInt(sessions.length)];
+        }
+    }
+
+    @Benchmark
+    public List<Server> getServers(Players players) {
+        return ServerManager.getServers(players.next());
+    }
+
+    @Benchmark
+    public int addAndRemove(Players players) {
+        Connection session = players.next();
+        ServerManager.addServer(session, SERVER, 0);
+        int index = ServerManager.getServerIndex(session, SERVER);
+        ServerManager.removeServer(session, SERVER);
+        return index;
+    }
+
+    @Benchmark
+    public List<Server> loadAndUnload(Players players) {
+        // What a join and leave does to the map, without the storage backend
+        Connection session = connection("churn-" + Thread.currentThread().getId());
+        ServerManager.setServers(session, new ArrayList<>());
+        List<Server> servers = ServerManager.getServers(session);
+        ServerManager.setServers(session, servers);
+        return servers;
+    }
+
+    private static Connection connection(String xuid) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+            case "xuid" -> xuid;
+            case "bedrockUsername" -> "Player" + xuid;
+            case "hashCode" -> xuid.hashCode();
+            case "equals" -> proxy == args[0];
+            case "toString" -> "Connection " + xuid;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.vhost;
+
+import org.geysermc.extension.connect.config.VirtualHostSection;
+import org.geysermc.extension.connect.utils.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the virtual host router against the regex based parsing it replaced
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VirtualHostRouterBenchmark {
+    private static final VirtualHostSection SECTION = new VirtualHostSection(true, List.of("example.com", "eu.example.com", "us.example.com"));
+
+    @Param({
+        "hypixel.net.example.com",
+        "hypixel.net._p25566._o.eu.example.com:19132",
+        "play.example.org",
+        "_p25565.example.com"
+    })
+    public String address;
+
+    private VirtualHostRouter cachedRouter;
+
+    @Setup
+    public void setup() {
+        cachedRouter = VirtualHostRouter.of(SECTION);
+    }
+
+    @Benchmark
+    public VirtualHostRouter.Route routerCached() {
+        return cachedRouter.route(address);
+    }
+
+    @Benchmark
+    public VirtualHostRouter.Route routerUncached() {
+        // A new router each time so every call has to parse the address
+        return VirtualHostRouter.of(SECTION).route(address);
+    }
+
+    @Benchmark
+    public Server legacyRegex() {
+        // The parsing previously done in PacketHandler for each join
+        Pattern regex = Pattern.compile("\\.?(" + SECTION.domains().stream().map(Pattern::quote).collect(Collectors.joining("|")) + ")(:[0-9]+)?$");
+
+        if (regex.matcher(address).find()) {
+            String target = address.replaceAll(regex.pattern(), "").strip();
+            if (!target.isEmpty()) {
+                String targetAddress = "";
+                int port = 25565;
+                boolean online = true;
+
+                String[] domainParts = target.split("\\._");
+                for (int i = 0; i < domainParts.length; i++) {
+                    String part = domainParts[i];
+                    if (i == 0) {
+                        targetAddress = part;
+                    } else if (part.startsWith("p")) {
+                        port = Integer.parseInt(part.substring(1));
+                    } else if (part.startsWith("o")) {
+                        online = false;
+                    }
+                }
+
+                if (targetAddress.startsWith("_")) {
+                    return null;
+                }
+
+                return new Server(targetAddress, port, online, false, null, null, null);
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.loadtest;
+
+import org.geysermc.extension.connect.metrics.Histogram;
+import org.geysermc.extension.connect.metrics.Metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the swarm has seen so far, shared by every client
+ */
+public class LoadStats {
+    public static final double[] ROUND_TRIP_BUCKETS = {0.0005, 0.001, 0.002, 0.005, 0.01, 0.02, 0.05, 0.1, 0.2, 0.5, 1, 2, 5};
+    public static final double[] JOIN_BUCKETS = {0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder forms = new LongAdder();
+    private final LongAdder unexpectedForms = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final Map<String, LongAdder> failureReasons = new ConcurrentHashMap<>();
+
+    // Kept in a registry of their own since the load test never runs inside GeyserConnect
+    private final Histogram joinTime = Metrics.histogram("loadtest_join_seconds", "Time from connecting to the first form", JOIN_BUCKETS);
+    private final Histogram formRoundTrip = Metrics.histogram("loadtest_form_round_trip_seconds", "Time from answering a form to getting the next one", ROUND_TRIP_BUCKETS);
+    private final Histogram walkTime = Metrics.histogram("loadtest_walk_seconds", "Time from connecting to being transferred", JOIN_BUCKETS);
+
+    public void clientStarted() {
+        active.incrementAndGet();
+        started.increment();
+    }
+
+    public void clientStopped() {
+        active.decrementAndGet();
+    }
+
+    public void joined(long connectedAt) {
+        joined.increment();
+        joinTime.observeSince(connectedAt);
+    }
+
+    public void formAnswered(long answeredAt) {
+        forms.increment();
+        if (answeredAt != 0) {
+            formRoundTrip.observeSince(answeredAt);
+        }
+    }
+
+    public void unexpectedForm() {
+        unexpectedForms.increment();
+    }
+
+    public void transferred(long connectedAt) {
+        transfers.increment();
+        walkTime.observeSince(connectedAt);
+    }
+
+    public void walkCompleted() {
+        completed.increment();
+    }
+
+    public void walkFailed(String reason) {
+        failed.increment();
+        failureReasons.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+
+    public void walkTimedOut() {
+        timedOut.increment();
+    }
+
+    public int active() {
+        return active.get();
+    }
+
+    public long started() {
+        return started.sum();
+    }
+
+    public long joined() {
+        return joined.sum();
+    }
+
+    public long forms() {
+        return forms.sum();
+    }
+
+    public long unexpectedForms() {
+        return unexpectedForms.sum();
+    }
+
+    public long transfers() {
+        return transfers.sum();
+    }
+
+    public long completed() {
+        return completed.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    public long timedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * @return How many clients failed for each reason, most common first
+     */
+    public List<Map.Entry<String, Long>> failureReasons() {
+        return failureReasons.entrySet().stream()
+            .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .toList();
+    }
+
+    public Histogram joinTime() {
+        return joinTime;
+    }
+
+    public Histogram formRoundTrip() {
+        return formRoundTrip;
+    }
+
+    public Histogram walkTime() {
+        return walkTime;
+    }
+}
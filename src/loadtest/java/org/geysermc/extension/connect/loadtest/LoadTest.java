@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.loadtest;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.geysermc.extension.connect.metrics.Histogram;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a swarm of simulated Bedrock players over loopback against a standalone Geyser running GeyserConnect,
+ * reporting joins per second, form round trips and the server's CPU and heap as it goes.
+ * <p>
+ * Each player slot logs in, walks the menus and once transferred logs in again, until the duration is up.
+ */
+public class LoadTest {
+    private static final long BASE_XUID = 2535400000000000L;
+    private static final long LAUNCH_TICK_MILLIS = 10;
+
+    private final LoadTestOptions options;
+    private final LoadStats stats = new LoadStats();
+    private final ServerStats serverStats;
+    private final Queue<Integer> idle = new ConcurrentLinkedQueue<>();
+    private final EventLoopGroup group;
+    private final ScheduledExecutorService scheduler;
+
+    private LoginChain[] logins;
+    private volatile boolean stopping;
+    private long startedAt;
+
+    // Only touched on the scheduler thread
+    private long launched;
+    private long lastReportAt;
+    private long lastJoined;
+    private long lastTransfers;
+
+    public LoadTest(LoadTestOptions options) {
+        this.options = options;
+        this.serverStats = options.metrics() != null ? new ServerStats(options.metrics()) : null;
+        this.group = new NioEventLoopGroup(options.threads());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LoadTest Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadTestOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        System.exit(new LoadTest(options).run() ? 0 : 1);
+    }
+
+    /**
+     * Run the load test to the end
+     *
+     * @return If any client made it into the menu
+     */
+    public boolean run() throws InterruptedException {
+        // Signing logins is slow enough to get in the way of the join rate so do it all up front
+        long prepareStart = System.nanoTime();
+        String serverAddress = options.address().getHostString() + ":" + options.address().getPort();
+        String gameVersion = SwarmClient.gameVersion();
+        logins = IntStream.range(0, options.clients()).parallel()
+            .mapToObj(slot -> new LoginChain("LoadTest" + slot, String.valueOf(BASE_XUID + slot), serverAddress, gameVersion))
+            .toArray(LoginChain[]::new);
+        System.out.printf("Prepared %d logins in %dms%n", options.clients(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - prepareStart));
+
+        for (int slot = 0; slot < options.clients(); slot++) {
+            idle.add(slot);
+        }
+
+        System.out.printf("Starting %d clients (Bedrock %s) at %d/s against %s for %ds%n",
+            options.clients(), gameVersion, options.rate(), serverAddress, options.duration());
+
+        if (serverStats != null) {
+            // Take a first sample so the first report has a CPU figure
+            serverStats.sample();
+        }
+
+        startedAt = System.nanoTime();
+        lastReportAt = startedAt;
+        scheduler.scheduleAtFixedRate(this::launch, 0, LAUNCH_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::report, options.report(), options.report(), TimeUnit.SECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.duration()));
+        stopping = true;
+
+        // Give the clients still walking the menus a chance to finish
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.timeout() + 5);
+        while (stats.active() > 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(100);
+        }
+
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        report();
+        summary();
+
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).await(5, TimeUnit.SECONDS);
+        return stats.joined() > 0;
+    }
+
+    /**
+     * Start as many clients as the join rate allows
+     */
+    private void launch() {
+        if (stopping) {
+            return;
+        }
+
+        long allowed = (System.nanoTime() - startedAt) * options.rate() / TimeUnit.SECONDS.toNanos(1) + 1;
+        Integer slot;
+        while (launched < allowed && (slot = idle.poll()) != null) {
+            launched++;
+            start(slot);
+        }
+    }
+
+    private void start(int slot) {
+        new SwarmClient(options, stats, logins[slot], () -> {
+            if (!stopping) {
+                idle.add(slot);
+            }
+        }).connect(group);
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        double interval = Math.max(1, now - lastReportAt) / 1e9;
+        long joined = stats.joined();
+        long transfers = stats.transfers();
+
+        StringBuilder line = new StringBuilder(String.format("[%4ds] active %d  joins %.1f/s (%d)  transfers %.1f/s (%d)  failed %d  timed out %d  form rtt p50 %s p95 %s p99 %s  join p95 %s",
+            TimeUnit.NANOSECONDS.toSeconds(now - startedAt), stats.active(),
+            (joined - lastJoined) / interval, joined, (transfers - lastTransfers) / interval, transfers,
+            stats.failed(), stats.timedOut(),
+            millis(stats.formRoundTrip(), 0.5), millis(stats.formRoundTrip(), 0.95), millis(stats.formRoundTrip(), 0.99),
+            millis(stats.joinTime(), 0.95)));
+
+        if (serverStats != null) {
+            ServerStats.Sample sample = serverStats.sample();
+            if (sample != null) {
+                line.append(String.format("  server cpu %.0f%%  heap %d/%d MB  in menu %.0f",
+                    sample.cpuPercent(), megabytes(sample.heapUsedBytes()), megabytes(sample.heapMaxBytes()), sample.menuSessions()));
+            } else {
+                line.append("  server metrics unavailable");
+            }
+        }
+
+        System.out.println(line);
+        lastReportAt = now;
+        lastJoined = joined;
+        lastTransfers = transfers;
+    }
+
+    private void summary() {
+        double elapsed = (System.nanoTime() - startedAt) / 1e9;
+
+        System.out.println();
+        System.out.printf("Clients started:   %d%n", stats.started());
+        System.out.printf("Joined:            %d (%.1f/s)%n", stats.joined(), stats.joined() / elapsed);
+        System.out.printf("Transferred:       %d (%.1f/s)%n", stats.transfers(), stats.transfers() / elapsed);
+        System.out.printf("Completed:         %d%n", stats.completed());
+        System.out.printf("Failed:            %d%n", stats.failed());
+        System.out.printf("Timed out:         %d%n", stats.timedOut());
+        System.out.printf("Forms answered:    %d (%d unexpected)%n", stats.forms(), stats.unexpectedForms());
+        System.out.printf("Form round trip:   p50 %s  p95 %s  p99 %s%n", millis(stats.formRoundTrip(), 0.5), millis(stats.formRoundTrip(), 0.95), millis(stats.formRoundTrip(), 0.99));
+        System.out.printf("Join to first form: p50 %s  p95 %s  p99 %s%n", millis(stats.joinTime(), 0.5), millis(stats.joinTime(), 0.95), millis(stats.joinTime(), 0.99));
+        System.out.printf("Join to transfer:  p50 %s  p95 %s  p99 %s%n", millis(stats.walkTime(), 0.5), millis(stats.walkTime(), 0.95), millis(stats.walkTime(), 0.99));
+
+        if (serverStats != null) {
+            System.out.printf("Server peak:       cpu %.0f%%  heap %d MB%n", serverStats.peakCpuPercent(), megabytes(serverStats.peakHeapBytes()));
+        }
+
+        if (stats.failed() > 0) {
+            System.out.println("Failures:");
+            for (Map.Entry<String, Long> reason : stats.failureReasons().stream().limit(10).toList()) {
+                System.out.printf("  %6d  %s%n", reason.getValue(), reason.getKey());
+            }
+        }
+    }
+
+    /**
+     * The histograms only know which bucket a value is in, so this is an upper bound
+     */
+    private static String millis(Histogram histogram, double quantile) {
+        if (histogram.count() == 0) {
+            return "-";
+        }
+
+        double seconds = histogram.quantile(quantile);
+        if (Double.isInfinite(seconds)) {
+            return "slow";
+        }
+        return "<" + (seconds < 0.001 ? String.format("%.1f", seconds * 1000) : String.format("%.0f", seconds * 1000)) + "ms";
+    }
+
+    private static long megabytes(double bytes) {
+        return (long) (bytes / (1024 * 1024));
+    }
+}
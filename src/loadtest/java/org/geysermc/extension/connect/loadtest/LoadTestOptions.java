@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.loadtest;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/**
+ * How the load test should run, parsed from the command line
+ *
+ * @param address The Geyser to connect to
+ * @param clients How many clients to keep connected at once
+ * @param rate How many clients to start joining each second
+ * @param duration How long to keep starting new clients for, in seconds
+ * @param timeout How long a client has to finish its walk through the menus, in seconds
+ * @param pages How many pages of Geyser servers each client looks through
+ * @param transferTarget The Bedrock server each client adds as a custom server and transfers to
+ * @param metrics The GeyserConnect metrics endpoint to read server CPU and heap from, or null to not
+ * @param threads How many event loop threads the clients share
+ * @param report How often to print progress, in seconds
+ */
+public record LoadTestOptions(InetSocketAddress address, int clients, int rate, int duration, int timeout, int pages,
+                              InetSocketAddress transferTarget, URI metrics, int threads, int report) {
+    public static final String USAGE = """
+        Options:
+          --address <host:port>          Geyser to connect to (default 127.0.0.1:19132)
+          --clients <count>              Clients connected at once (default 500)
+          --rate <joins per second>      How fast to start clients (default 50)
+          --duration <seconds>           How long to keep starting clients (default 60)
+          --timeout <seconds>            Time allowed for each walk through the menus (default 30)
+          --pages <count>                Pages of Geyser servers to look through (default 2)
+          --transfer-target <host:port>  Bedrock server to add and transfer to (default 127.0.0.1:19133)
+          --metrics <url|none>           GeyserConnect metrics endpoint (default http://127.0.0.1:9464/metrics)
+          --threads <count>              Client event loop threads (default available processors)
+          --report <seconds>             How often to print progress (default 5)""";
+
+    /**
+     * Parse the command line
+     *
+     * @param args The arguments given to the load test
+     * @return The options, with defaults for anything not given
+     * @throws IllegalArgumentException If an option is unknown or has a bad value
+     */
+    public static LoadTestOptions parse(String[] args) {
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 19132);
+        int clients = 500;
+        int rate = 50;
+        int duration = 60;
+        int timeout = 30;
+        int pages = 2;
+        InetSocketAddress transferTarget = InetSocketAddress.createUnresolved("127.0.0.1", 19133);
+        URI metrics = URI.create("http://127.0.0.1:9464/metrics");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int report = 5;
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help")) {
+                throw new IllegalArgumentException("GeyserConnect load test");
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+
+            switch (option) {
+                case "--address" -> address = address(value, 19132, true);
+                case "--clients" -> clients = positive(option, value);
+                case "--rate" -> rate = positive(option, value);
+                case "--duration" -> duration = positive(option, value);
+                case "--timeout" -> timeout = positive(option, value);
+                case "--pages" -> pages = Integer.parseInt(value);
+                case "--transfer-target" -> transferTarget = address(value, 19132, false);
+                case "--metrics" -> metrics = value.equalsIgnoreCase("none") ? null : URI.create(value);
+                case "--threads" -> threads = positive(option, value);
+                case "--report" -> report = positive(option, value);
+                default -> throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        return new LoadTestOptions(address, clients, rate, duration, timeout, pages, transferTarget, metrics, threads, report);
+    }
+
+    private static int positive(String option, String value) {
+        int number = Integer.parseInt(value);
+        if (number <= 0) {
+            throw new IllegalArgumentException(option + " must be more than 0");
+        }
+        return number;
+    }
+
+    private static InetSocketAddress address(String value, int defaultPort, boolean resolve) {
+        int split = value.lastIndexOf(':');
+        String host = split == -1 ? value : value.substring(0, split);
+        int port = split == -1 ? defaultPort : Integer.parseInt(value.substring(split + 1));
+        return resolve ? new InetSocketAddress(host, port) : InetSocketAddress.createUnresolved(host, port);
+    }
+}
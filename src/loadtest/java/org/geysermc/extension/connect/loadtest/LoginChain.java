@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.geysermc.extension.connect.utils.Utils;
+
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A self signed Bedrock login for one simulated player, the same shape as an offline client would send.
+ * Geyser only accepts these with validate-bedrock-login turned off.
+ */
+public class LoginChain {
+    private static final Base64.Encoder URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder URL_DECODER = Base64.getUrlDecoder();
+    private static final String SKIN_DATA = Base64.getEncoder().encodeToString(new byte[64 * 64 * 4]);
+    private static final String SKIN_RESOURCE_PATCH = Base64.getEncoder().encodeToString("{\"geometry\":{\"default\":\"geometry.humanoid.custom\"}}".getBytes(StandardCharsets.UTF_8));
+
+    private final KeyPair keyPair;
+    private final String publicKey;
+    private final List<String> chain;
+    private final String clientData;
+
+    /**
+     * @param username The player's name
+     * @param xuid The player's XUID, custom servers are saved against this
+     * @param serverAddress The address the player typed in, used for virtual hosts
+     * @param gameVersion The Bedrock version the player is pretending to be
+     */
+    public LoginChain(String username, String xuid, String serverAddress, String gameVersion) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp384r1"));
+            this.keyPair = generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create a login key", e);
+        }
+        this.publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+
+        UUID identity = UUID.nameUUIDFromBytes(("LoadTest:" + xuid).getBytes(StandardCharsets.UTF_8));
+        long now = System.currentTimeMillis() / 1000;
+
+        Map<String, Object> extraData = new LinkedHashMap<>();
+        extraData.put("XUID", xuid);
+        extraData.put("identity", identity.toString());
+        extraData.put("displayName", username);
+        extraData.put("titleId", "896928775");
+
+        Map<String, Object> identityClaims = new LinkedHashMap<>();
+        identityClaims.put("nbf", now - 60);
+        identityClaims.put("exp", now + 24 * 60 * 60);
+        identityClaims.put("iat", now);
+        identityClaims.put("certificateAuthority", true);
+        identityClaims.put("identityPublicKey", publicKey);
+        identityClaims.put("extraData", extraData);
+        this.chain = List.of(sign(identityClaims));
+
+        Map<String, Object> client = new LinkedHashMap<>();
+        client.put("GameVersion", gameVersion);
+        client.put("ServerAddress", serverAddress);
+        client.put("ThirdPartyName", username);
+        client.put("LanguageCode", "en_US");
+        client.put("DeviceOS", 7);
+        client.put("DeviceId", identity.toString().replace("-", ""));
+        client.put("DeviceModel", "GeyserConnect LoadTest");
+        client.put("ClientRandomId", identity.getLeastSignificantBits());
+        client.put("SelfSignedId", identity.toString());
+        client.put("PlayFabId", "");
+        client.put("CurrentInputMode", 1);
+        client.put("DefaultInputMode", 1);
+        client.put("UIProfile", 0);
+        client.put("GuiScale", 0);
+        client.put("MaxViewDistance", 4);
+        client.put("MemoryTier", 0);
+        client.put("PlatformType", 0);
+        client.put("GraphicsMode", 0);
+        client.put("SkinId", "Standard_Custom");
+        client.put("SkinData", SKIN_DATA);
+        client.put("SkinImageWidth", 64);
+        client.put("SkinImageHeight", 64);
+        client.put("SkinResourcePatch", SKIN_RESOURCE_PATCH);
+        client.put("SkinGeometryData", "");
+        client.put("SkinAnimationData", "");
+        client.put("SkinColor", "#0");
+        client.put("ArmSize", "wide");
+        client.put("CapeId", "");
+        client.put("CapeData", "");
+        client.put("CapeImageWidth", 0);
+        client.put("CapeImageHeight", 0);
+        client.put("CapeOnClassicSkin", false);
+        client.put("PersonaSkin", false);
+        client.put("PremiumSkin", false);
+        client.put("TrustedSkin", false);
+        client.put("OverrideSkin", false);
+        client.put("AnimatedImageData", List.of());
+        client.put("PersonaPieces", List.of());
+        client.put("PieceTintColors", List.of());
+        client.put("PlatformOnlineId", "");
+        client.put("PlatformOfflineId", "");
+        client.put("IsEditorMode", false);
+        client.put("CompatibleWithClientSideChunkGen", false);
+        this.clientData = sign(client);
+    }
+
+    private String sign(Map<String, Object> claims) {
+        try {
+            Map<String, Object> header = Map.of("alg", "ES384", "x5u", publicKey);
+            String unsigned = URL_ENCODER.encodeToString(Utils.OBJECT_MAPPER.writeValueAsBytes(header)) + "."
+                + URL_ENCODER.encodeToString(Utils.OBJECT_MAPPER.writeValueAsBytes(claims));
+
+            // JWTs want the raw r and s values rather than the DER Java gives by default
+            Signature signature = Signature.getInstance("SHA384withECDSAinP1363Format");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(unsigned.getBytes(StandardCharsets.US_ASCII));
+            return unsigned + "." + URL_ENCODER.encodeToString(signature.sign());
+        } catch (JsonProcessingException | GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign the login", e);
+        }
+    }
+
+    /**
+     * Work out the encryption key from the server's handshake
+     *
+     * @param handshakeJwt The JWT from the server to client handshake
+     * @return The key to encrypt the connection with
+     */
+    public SecretKey handshake(String handshakeJwt) {
+        String[] parts = handshakeJwt.split("\\.");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Handshake is not a JWT");
+        }
+
+        try {
+            JsonNode header = Utils.OBJECT_MAPPER.readTree(URL_DECODER.decode(parts[0]));
+            JsonNode claims = Utils.OBJECT_MAPPER.readTree(URL_DECODER.decode(parts[1]));
+
+            PublicKey serverKey = KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(header.path("x5u").asText())));
+            byte[] salt = Base64.getDecoder().decode(claims.path("salt").asText());
+
+            KeyAgreement agreement = KeyAgreement.getInstance("ECDH");
+            agreement.init(keyPair.getPrivate());
+            agreement.doPhase(serverKey, true);
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update(agreement.generateSecret());
+            return new SecretKeySpec(digest.digest(), "AES");
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to complete the encryption handshake", e);
+        }
+    }
+
+    public List<String> chain() {
+        return chain;
+    }
+
+    public String clientData() {
+        return clientData;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.geysermc.extension.connect.utils.Utils;
+
+/**
+ * Decides how one simulated player answers the menus. The menus are found by their en_US titles and buttons,
+ * so the server needs the default language file.
+ * <p>
+ * Each walk looks through a few pages of Geyser servers, then in custom servers deletes anything left from
+ * an earlier walk, adds the transfer target, edits its port and finally picks it to be transferred.
+ */
+public class MenuWalker {
+    private final String host;
+    private final int port;
+    private final int editedPort;
+    private final int pages;
+
+    private int pagesTurned;
+    private boolean browsed;
+    private boolean added;
+    private boolean edited;
+    private boolean transferring;
+    private boolean disconnecting;
+
+    /**
+     * @param host The host of the custom server to add
+     * @param port The port of the custom server to add, it is edited to the next port up
+     * @param pages How many pages of Geyser servers to look through
+     */
+    public MenuWalker(String host, int port, int pages) {
+        this.host = host;
+        this.port = port;
+        this.editedPort = port + 1;
+        this.pages = pages;
+    }
+
+    /**
+     * A decision about a form
+     *
+     * @param data The form response data, or null to leave the form open
+     * @param expected If the form was one the walk knows about
+     */
+    public record Answer(String data, boolean expected) {
+        private static final Answer WAIT = new Answer(null, true);
+    }
+
+    /**
+     * Work out how to answer a form
+     *
+     * @param formData The form JSON the server sent
+     * @return How to answer it
+     */
+    public Answer answer(String formData) {
+        JsonNode form;
+        try {
+            form = Utils.OBJECT_MAPPER.readTree(formData);
+        } catch (Exception e) {
+            return new Answer("null", false);
+        }
+
+        String title = form.path("title").asText();
+        switch (title) {
+            case "Notice":
+                return custom(form);
+            case "Queue":
+                // Wait for the server to let us in
+                return Answer.WAIT;
+            case "Main Menu":
+                if (!browsed) {
+                    return button(form, "Geyser Servers");
+                }
+                if (index(form, "Custom Servers") == -1) {
+                    // Custom servers are turned off so there is nowhere to transfer to
+                    disconnecting = true;
+                    return button(form, "Disconnect");
+                }
+                return button(form, "Custom Servers");
+            case "Geyser Servers":
+                if (pagesTurned < pages && index(form, "Next page") != -1) {
+                    pagesTurned++;
+                    return button(form, "Next page");
+                }
+                browsed = true;
+                return button(form, "Back");
+            case "Custom Servers":
+                if (added && edited) {
+                    transferring = true;
+                    return serverButton(form);
+                }
+                return button(form, "Edit servers");
+            case "Edit Servers":
+                if (!added) {
+                    // Clear out anything left from an earlier walk before adding our server
+                    int left = serverIndex(form);
+                    return left != -1 ? new Answer(String.valueOf(left), true) : button(form, "Add server");
+                }
+                if (!edited) {
+                    return serverButton(form);
+                }
+                return button(form, "Back");
+            case "Add Server":
+                added = true;
+                return serverDetails(port);
+            case "Server Options":
+                if (!added) {
+                    return button(form, "Delete server");
+                }
+                if (!edited) {
+                    return button(form, "Edit server");
+                }
+                return button(form, "Back");
+            case "Edit Server":
+                edited = true;
+                return serverDetails(editedPort);
+            case "Delete Server":
+                return new Answer("true", true);
+            default:
+                return fallback(form);
+        }
+    }
+
+    /**
+     * @return If the last answer picked our server to be transferred to
+     */
+    public boolean transferring() {
+        return transferring;
+    }
+
+    /**
+     * @return If the last answer was to disconnect since there is nothing left to do
+     */
+    public boolean disconnecting() {
+        return disconnecting;
+    }
+
+    private Answer serverDetails(int serverPort) {
+        ArrayNode details = Utils.OBJECT_MAPPER.createArrayNode();
+        details.add(host);
+        details.add(String.valueOf(serverPort));
+        details.add(false);
+        details.add(true);
+        return new Answer(details.toString(), true);
+    }
+
+    private Answer button(JsonNode form, String text) {
+        int index = index(form, text);
+        if (index == -1) {
+            return fallback(form);
+        }
+        return new Answer(String.valueOf(index), true);
+    }
+
+    private Answer serverButton(JsonNode form) {
+        int index = serverIndex(form);
+        if (index == -1) {
+            return fallback(form);
+        }
+        return new Answer(String.valueOf(index), true);
+    }
+
+    private int index(JsonNode form, String text) {
+        JsonNode buttons = form.path("buttons");
+        for (int i = 0; i < buttons.size(); i++) {
+            if (buttons.get(i).path("text").asText().equals(text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int serverIndex(JsonNode form) {
+        JsonNode buttons = form.path("buttons");
+        for (int i = 0; i < buttons.size(); i++) {
+            if (buttons.get(i).path("text").asText().startsWith(host)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Fill in a custom form with its defaults
+     */
+    private Answer custom(JsonNode form) {
+        ArrayNode values = Utils.OBJECT_MAPPER.createArrayNode();
+        for (JsonNode component : form.path("content")) {
+            switch (component.path("type").asText()) {
+                case "input" -> values.add(component.path("default").asText());
+                case "toggle" -> values.add(component.path("default").asBoolean());
+                case "dropdown", "slider", "step_slider" -> values.add(component.path("default").asInt());
+                default -> values.addNull();
+            }
+        }
+        return new Answer(values.toString(), true);
+    }
+
+    /**
+     * Back out of a form we don't know about
+     */
+    private Answer fallback(JsonNode form) {
+        return switch (form.path("type").asText()) {
+            case "form" -> new Answer(String.valueOf(Math.max(0, form.path("buttons").size() - 1)), false);
+            case "modal" -> new Answer("false", false);
+            case "custom_form" -> new Answer(custom(form).data(), false);
+            default -> new Answer("null", false);
+        };
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Reads the server's CPU and heap from the GeyserConnect metrics endpoint
+ */
+public class ServerStats {
+    private static final String CPU = "process_cpu_seconds_total";
+    private static final String HEAP_USED = "jvm_memory_used_bytes{area=\"heap\"}";
+    private static final String HEAP_MAX = "jvm_memory_max_bytes{area=\"heap\"}";
+    private static final String MENU_SESSIONS = "geyserconnect_menu_sessions";
+
+    private final URI uri;
+    private final HttpClient httpClient;
+
+    private double lastCpuSeconds = -1;
+    private long lastSampleNanos;
+    private double peakCpuPercent;
+    private double peakHeapBytes;
+
+    /**
+     * The server at one point in time
+     *
+     * @param cpuPercent CPU used since the last sample, 100 for each busy core
+     * @param heapUsedBytes Heap in use
+     * @param heapMaxBytes Heap the server may grow to
+     * @param menuSessions Players GeyserConnect thinks are in the menu
+     */
+    public record Sample(double cpuPercent, double heapUsedBytes, double heapMaxBytes, double menuSessions) {
+    }
+
+    public ServerStats(URI uri) {
+        this.uri = uri;
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    }
+
+    /**
+     * Scrape the endpoint, only called from the reporting thread
+     *
+     * @return The latest sample, or null if the endpoint couldn't be read
+     */
+    public Sample sample() {
+        String body;
+        try {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(2)).GET().build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            body = response.body();
+        } catch (Exception e) {
+            return null;
+        }
+
+        double cpuSeconds = -1;
+        double heapUsed = 0;
+        double heapMax = 0;
+        double menuSessions = 0;
+        for (String line : body.split("\n")) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+
+            int split = line.lastIndexOf(' ');
+            if (split == -1) {
+                continue;
+            }
+
+            String name = line.substring(0, split);
+            switch (name) {
+                case CPU -> cpuSeconds = Double.parseDouble(line.substring(split + 1));
+                case HEAP_USED -> heapUsed = Double.parseDouble(line.substring(split + 1));
+                case HEAP_MAX -> heapMax = Double.parseDouble(line.substring(split + 1));
+                case MENU_SESSIONS -> menuSessions = Double.parseDouble(line.substring(split + 1));
+            }
+        }
+
+        long now = System.nanoTime();
+        double cpuPercent = 0;
+        if (cpuSeconds >= 0 && lastCpuSeconds >= 0) {
+            cpuPercent = (cpuSeconds - lastCpuSeconds) / ((now - lastSampleNanos) / 1e9) * 100;
+        }
+        lastCpuSeconds = cpuSeconds;
+        lastSampleNanos = now;
+
+        peakCpuPercent = Math.max(peakCpuPercent, cpuPercent);
+        peakHeapBytes = Math.max(peakHeapBytes, heapUsed);
+        return new Sample(cpuPercent, heapUsed, heapMax, menuSessions);
+    }
+
+    public double peakCpuPercent() {
+        return peakCpuPercent;
+    }
+
+    public double peakHeapBytes() {
+        return peakHeapBytes;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.loadtest;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.cloudburstmc.netty.channel.raknet.RakChannelFactory;
+import org.cloudburstmc.netty.channel.raknet.config.RakChannelOption;
+import org.cloudburstmc.protocol.bedrock.BedrockClientSession;
+import org.cloudburstmc.protocol.bedrock.codec.BedrockCodec;
+import org.cloudburstmc.protocol.bedrock.data.auth.AuthType;
+import org.cloudburstmc.protocol.bedrock.data.auth.CertificateChainPayload;
+import org.cloudburstmc.protocol.bedrock.netty.initializer.BedrockClientInitializer;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacketHandler;
+import org.cloudburstmc.protocol.bedrock.packet.ClientToServerHandshakePacket;
+import org.cloudburstmc.protocol.bedrock.packet.DisconnectPacket;
+import org.cloudburstmc.protocol.bedrock.packet.LoginPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ModalFormRequestPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ModalFormResponsePacket;
+import org.cloudburstmc.protocol.bedrock.packet.NetworkSettingsPacket;
+import org.cloudburstmc.protocol.bedrock.packet.NetworkStackLatencyPacket;
+import org.cloudburstmc.protocol.bedrock.packet.PlayStatusPacket;
+import org.cloudburstmc.protocol.bedrock.packet.RequestChunkRadiusPacket;
+import org.cloudburstmc.protocol.bedrock.packet.RequestNetworkSettingsPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ResourcePackClientResponsePacket;
+import org.cloudburstmc.protocol.bedrock.packet.ResourcePackStackPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ResourcePacksInfoPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ServerToClientHandshakePacket;
+import org.cloudburstmc.protocol.bedrock.packet.SetLocalPlayerAsInitializedPacket;
+import org.cloudburstmc.protocol.bedrock.packet.StartGamePacket;
+import org.cloudburstmc.protocol.bedrock.packet.TransferPacket;
+import org.cloudburstmc.protocol.common.PacketSignal;
+import org.geysermc.geyser.network.GameProtocol;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated Bedrock player. It logs in, walks the menus with a {@link MenuWalker} and is done once
+ * GeyserConnect transfers it. Everything after connecting runs on the client's event loop.
+ */
+public class SwarmClient implements BedrockPacketHandler {
+    // Always speak the newest version the Geyser on the classpath does
+    private static final BedrockCodec CODEC = GameProtocol.DEFAULT_BEDROCK_CODEC;
+    private static final int CHUNK_RADIUS = 4;
+
+    private final LoadTestOptions options;
+    private final LoadStats stats;
+    private final LoginChain loginChain;
+    private final MenuWalker walker;
+    private final Runnable onFinish;
+
+    private Channel channel;
+    private BedrockClientSession session;
+    private ScheduledFuture<?> timeout;
+    private long connectedAt;
+    private long answeredAt;
+    private long runtimeEntityId;
+    private boolean joined;
+    private boolean finished;
+
+    /**
+     * @param options The load test options
+     * @param stats Where to record what happens
+     * @param loginChain The player to log in as
+     * @param onFinish Called once the client is done, whatever the outcome
+     */
+    public SwarmClient(LoadTestOptions options, LoadStats stats, LoginChain loginChain, Runnable onFinish) {
+        this.options = options;
+        this.stats = stats;
+        this.loginChain = loginChain;
+        this.walker = new MenuWalker(options.transferTarget().getHostString(), options.transferTarget().getPort(), options.pages());
+        this.onFinish = onFinish;
+    }
+
+    public static String gameVersion() {
+        return CODEC.getMinecraftVersion();
+    }
+
+    /**
+     * Start connecting
+     *
+     * @param group The event loops the swarm shares
+     */
+    public void connect(EventLoopGroup group) {
+        stats.clientStarted();
+        connectedAt = System.nanoTime();
+
+        ChannelFuture future = new Bootstrap()
+            .channelFactory(RakChannelFactory.client(NioDatagramChannel.class))
+            .group(group)
+            .option(RakChannelOption.RAK_PROTOCOL_VERSION, CODEC.getRaknetProtocolVersion())
+            .option(RakChannelOption.RAK_GUID, ThreadLocalRandom.current().nextLong())
+            .handler(new BedrockClientInitializer() {
+                @Override
+                protected void initSession(BedrockClientSession session) {
+                    SwarmClient.this.session = session;
+                    session.setCodec(CODEC);
+                    session.setPacketHandler(SwarmClient.this);
+                }
+            })
+            .connect(options.address());
+
+        channel = future.channel();
+        future.addListener(connected -> {
+            if (!connected.isSuccess()) {
+                finish(Outcome.FAILED, "unable to connect");
+                return;
+            }
+
+            // Listeners run on the channel's event loop, the same as the packet handler
+            timeout = channel.eventLoop().schedule(() -> finish(Outcome.TIMED_OUT, null), options.timeout(), TimeUnit.SECONDS);
+            channel.closeFuture().addListener(closed -> finish(walker.disconnecting() ? Outcome.COMPLETED : Outcome.FAILED, "connection closed"));
+
+            // The first thing a client does is ask how the server wants packets compressed
+            RequestNetworkSettingsPacket packet = new RequestNetworkSettingsPacket();
+            packet.setProtocolVersion(CODEC.getProtocolVersion());
+            session.sendPacketImmediately(packet);
+        });
+    }
+
+    @Override
+    public PacketSignal handle(NetworkSettingsPacket packet) {
+        session.setCompression(packet.getCompressionAlgorithm());
+
+        LoginPacket login = new LoginPacket();
+        login.setProtocolVersion(CODEC.getProtocolVersion());
+        login.setAuthPayload(new CertificateChainPayload(loginChain.chain(), AuthType.SELF_SIGNED));
+        login.setClientJwt(loginChain.clientData());
+        session.sendPacketImmediately(login);
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(ServerToClientHandshakePacket packet) {
+        session.enableEncryption(loginChain.handshake(packet.getJwt()));
+        session.sendPacketImmediately(new ClientToServerHandshakePacket());
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(PlayStatusPacket packet) {
+        switch (packet.getStatus()) {
+            case LOGIN_SUCCESS:
+                break;
+            case PLAYER_SPAWN:
+                // This is where GeyserConnect takes over from Geyser
+                SetLocalPlayerAsInitializedPacket initialized = new SetLocalPlayerAsInitializedPacket();
+                initialized.setRuntimeEntityId(runtimeEntityId);
+                session.sendPacket(initialized);
+                break;
+            default:
+                finish(Outcome.FAILED, "play status " + packet.getStatus());
+                break;
+        }
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(ResourcePacksInfoPacket packet) {
+        respond(ResourcePackClientResponsePacket.Status.HAVE_ALL_PACKS);
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(ResourcePackStackPacket packet) {
+        respond(ResourcePackClientResponsePacket.Status.COMPLETED);
+        return PacketSignal.HANDLED;
+    }
+
+    private void respond(ResourcePackClientResponsePacket.Status status) {
+        ResourcePackClientResponsePacket response = new ResourcePackClientResponsePacket();
+        response.setStatus(status);
+        session.sendPacket(response);
+    }
+
+    @Override
+    public PacketSignal handle(StartGamePacket packet) {
+        runtimeEntityId = packet.getRuntimeEntityId();
+
+        RequestChunkRadiusPacket radius = new RequestChunkRadiusPacket();
+        radius.setRadius(CHUNK_RADIUS);
+        radius.setMaxRadius(CHUNK_RADIUS);
+        session.sendPacket(radius);
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(NetworkStackLatencyPacket packet) {
+        if (packet.isFromServer()) {
+            NetworkStackLatencyPacket response = new NetworkStackLatencyPacket();
+            response.setTimestamp(packet.getTimestamp());
+            response.setFromServer(false);
+            session.sendPacket(response);
+        }
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(ModalFormRequestPacket packet) {
+        if (!joined) {
+            joined = true;
+            stats.joined(connectedAt);
+        }
+        stats.formAnswered(answeredAt);
+
+        MenuWalker.Answer answer = walker.answer(packet.getFormData());
+        if (!answer.expected()) {
+            stats.unexpectedForm();
+        }
+
+        if (answer.data() == null) {
+            // Leave it open until the server sends something else
+            answeredAt = 0;
+            return PacketSignal.HANDLED;
+        }
+
+        ModalFormResponsePacket response = new ModalFormResponsePacket();
+        response.setFormId(packet.getFormId());
+        response.setFormData(answer.data());
+        answeredAt = System.nanoTime();
+        session.sendPacket(response);
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(TransferPacket packet) {
+        InetSocketAddress target = options.transferTarget();
+        if (packet.getAddress().equals(target.getHostString()) && packet.getPort() == target.getPort() + 1) {
+            finish(Outcome.TRANSFERRED, null);
+        } else {
+            finish(Outcome.FAILED, "transferred to " + packet.getAddress() + ":" + packet.getPort());
+        }
+        return PacketSignal.HANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(DisconnectPacket packet) {
+        finish(walker.disconnecting() ? Outcome.COMPLETED : Outcome.FAILED, "kicked: " + packet.getKickMessage());
+        return PacketSignal.HANDLED;
+    }
+
+    private enum Outcome {
+        TRANSFERRED,
+        COMPLETED,
+        FAILED,
+        TIMED_OUT
+    }
+
+    private void finish(Outcome outcome, String reason) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+
+        switch (outcome) {
+            case TRANSFERRED -> {
+                stats.transferred(connectedAt);
+                stats.walkCompleted();
+            }
+            case COMPLETED -> stats.walkCompleted();
+            case FAILED -> stats.walkFailed(reason);
+            case TIMED_OUT -> stats.walkTimedOut();
+        }
+
+        if (channel.isActive()) {
+            channel.close();
+        }
+
+        stats.clientStopped();
+        onFinish.run();
+    }
+}
@@ -26,13 +26,40 @@
 package org.geysermc.extension.connect;
 
 import org.cloudburstmc.protocol.bedrock.packet.BedrockPacketHandler;
+import org.cloudburstmc.protocol.bedrock.packet.TextPacket;
 import org.cloudburstmc.protocol.bedrock.packet.TransferPacket;
+import org.geysermc.extension.connect.admission.AdmissionController;
+import org.geysermc.extension.connect.cluster.Cluster;
+import org.geysermc.extension.connect.cluster.ClusterMembership;
+import org.geysermc.extension.connect.cluster.NodeStatus;
+import org.geysermc.extension.connect.config.ClusterSection;
 import org.geysermc.extension.connect.config.Config;
-import org.geysermc.extension.connect.config.ConfigLoader;
+import org.geysermc.extension.connect.dns.DnsCache;
+import org.geysermc.extension.connect.dns.JndiDnsResolver;
+import org.geysermc.extension.connect.dns.SpeculativeWarmup;
+import org.geysermc.extension.connect.feed.ServerFeed;
 import org.geysermc.extension.connect.language.LanguageManager;
+import org.geysermc.extension.connect.lobby.LobbyMode;
+import org.geysermc.extension.connect.metrics.Metrics;
+import org.geysermc.extension.connect.metrics.MetricsServer;
+import org.geysermc.extension.connect.metrics.SessionTraces;
+import org.geysermc.extension.connect.metrics.StatsReport;
+import org.geysermc.extension.connect.ping.PingCache;
+import org.geysermc.extension.connect.reload.ReloadManager;
+import org.geysermc.extension.connect.reload.Snapshot;
 import org.geysermc.extension.connect.storage.AbstractStorageManager;
 import org.geysermc.extension.connect.storage.DisabledStorageManager;
+import org.geysermc.extension.connect.storage.StorageFlusher;
+import org.geysermc.extension.connect.transfer.TransferJob;
+import org.geysermc.extension.connect.transfer.TransferTarget;
+import org.geysermc.extension.connect.ui.FormImageWorkaround;
+import org.geysermc.extension.connect.utils.Broadcast;
+import org.geysermc.extension.connect.utils.PhaseTimer;
+import org.geysermc.extension.connect.utils.PlayerServers;
+import org.geysermc.extension.connect.utils.ServerDirectory;
+import org.geysermc.extension.connect.utils.ServerManager;
 import org.geysermc.extension.connect.utils.Utils;
+import org.geysermc.extension.connect.vhost.VirtualHostRouter;
 import org.geysermc.cumulus.form.CustomForm;
 import org.geysermc.event.subscribe.Subscribe;
 import org.geysermc.geyser.GeyserImpl;
@@ -40,23 +67,45 @@ import org.geysermc.geyser.api.command.Command;
 import org.geysermc.geyser.api.command.CommandSource;
 import org.geysermc.geyser.api.connection.GeyserConnection;
 import org.geysermc.geyser.api.event.bedrock.SessionInitializeEvent;
+import org.geysermc.geyser.api.event.connection.GeyserBedrockPingEvent;
 import org.geysermc.geyser.api.event.lifecycle.GeyserDefineCommandsEvent;
 import org.geysermc.geyser.api.event.lifecycle.GeyserPostInitializeEvent;
 import org.geysermc.geyser.api.event.lifecycle.GeyserPreInitializeEvent;
+import org.geysermc.geyser.api.event.lifecycle.GeyserShutdownEvent;
 import org.geysermc.geyser.api.extension.Extension;
 import org.geysermc.geyser.api.network.AuthType;
 import org.geysermc.geyser.api.util.PlatformType;
 import org.geysermc.geyser.session.GeyserSession;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class GeyserConnect implements Extension {
+    private static final int DEFAULT_TRANSFER_RATE = 50;
+    private static final int DEFAULT_SHUTDOWN_TIMEOUT = 10;
+
     private static GeyserConnect instance;
-    private Config config;
-    private AbstractStorageManager storageManager;
-    private LanguageManager languageManager;
+    private volatile Snapshot snapshot;
+    private ReloadManager reloadManager;
+    private volatile AbstractStorageManager storageManager;
+    private CompletableFuture<Void> storageReady = CompletableFuture.completedFuture(null);
+    private AdmissionController admissionController;
+    private DnsCache dnsCache;
+    private SpeculativeWarmup speculativeWarmup;
+    private ServerFeed serverFeed;
+    private MetricsServer metricsServer;
+    private Cluster cluster;
+    private PingCache pingCache;
+    private final AtomicReference<TransferJob> transferJob = new AtomicReference<>();
 
     public GeyserConnect() {
         instance = this;
@@ -66,16 +115,66 @@ public class GeyserConnect implements Extension {
         return instance;
     }
 
+    /**
+     * @return Everything loaded from the config and language files, read once for a consistent view
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
     public Config config() {
-        return config;
+        return snapshot.config();
+    }
+
+    public ServerDirectory serverDirectory() {
+        return snapshot.serverDirectory();
+    }
+
+    public VirtualHostRouter virtualHostRouter() {
+        return snapshot.virtualHostRouter();
     }
 
     public AbstractStorageManager storageManager() {
         return storageManager;
     }
 
+    /**
+     * @return Completes once the storage manager has been set up
+     */
+    public CompletableFuture<Void> storageReady() {
+        return storageReady;
+    }
+
     public LanguageManager languageManager() {
-        return languageManager;
+        return snapshot.languageManager();
+    }
+
+    public ReloadManager reloadManager() {
+        return reloadManager;
+    }
+
+    public AdmissionController admissionController() {
+        return admissionController;
+    }
+
+    public DnsCache dnsCache() {
+        return dnsCache;
+    }
+
+    public SpeculativeWarmup speculativeWarmup() {
+        return speculativeWarmup;
+    }
+
+    public ServerFeed serverFeed() {
+        return serverFeed;
+    }
+
+    public Cluster cluster() {
+        return cluster;
+    }
+
+    public PingCache pingCache() {
+        return pingCache;
     }
 
     @Subscribe
@@ -88,11 +187,19 @@ public class GeyserConnect implements Extension {
 
     @Subscribe
     public void onPostInitialize(GeyserPostInitializeEvent event) {
-        config = ConfigLoader.load(this, GeyserConnect.class, Config.class);
+        GeyserImpl geyserInstance = (GeyserImpl) this.geyserApi();
+        PhaseTimer timer = new PhaseTimer();
+
+        // Load the config, servers and languages
+        reloadManager = new ReloadManager(this, geyserInstance.getScheduledThread(), snapshot -> this.snapshot = snapshot);
+        try {
+            reloadManager.load(timer);
+        } catch (RuntimeException e) {
+            this.logger().severe("Failed to load the config!", e);
+            return;
+        }
 
-        // Initialize language manager
-        languageManager = new LanguageManager();
-        languageManager.loadLanguageFromConfig(config.language());
+        Config config = config();
 
         if (!config.customServers().enabled()) {
             // Force the storage manager if we have it disabled
@@ -107,9 +214,62 @@ public class GeyserConnect implements Extension {
             }
         }
 
-        storageManager.setupStorage();
+        // Connecting to the database can be slow, so do it while Geyser finishes starting
+        // Players who get to the menu before it is ready wait for it in PacketHandler
+        AbstractStorageManager storage = storageManager;
+        storageReady = CompletableFuture.runAsync(() -> timer.time("storage", () -> {
+            try {
+                storage.setupStorage();
+            } catch (RuntimeException e) {
+                // Swapped before storageReady completes, so nobody waiting on it loads from the broken storage
+                storageManager = new DisabledStorageManager();
+                throw e;
+            }
+        }), runnable -> {
+            Thread thread = new Thread(runnable, "GeyserConnect Storage Setup");
+            thread.setDaemon(true);
+            thread.start();
+        });
+        storageReady.whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                this.logger().severe("Failed to set up storage!", throwable);
+                this.logger().warning("Custom servers will work but won't be saved until the storage is fixed and GeyserConnect is restarted");
+            } else {
+                this.logger().info("Storage ready after " + timer.phaseMillis("storage") + "ms");
+            }
+        });
+
+        timer.time("services", () -> {
+            admissionController = new AdmissionController(config.admission(), geyserInstance.getScheduledThread());
+            dnsCache = new DnsCache(config.dns(), new JndiDnsResolver(config.dns() != null ? config.dns().server() : null),
+                geyserInstance.getScheduledThread(), host -> serverDirectory().hasAddress(host));
+            speculativeWarmup = new SpeculativeWarmup(dnsCache, config.dns() != null && config.dns().speculate(),
+                config.dns() != null ? config.dns().speculationBudget() : 0);
+        });
+
+        if (config.serverFeed() != null && config.serverFeed().enabled() && config.serverFeed().source() != null && !config.serverFeed().source().isBlank()) {
+            serverFeed = new ServerFeed(this, config.serverFeed());
+            serverFeed.start();
+        }
 
-        GeyserImpl geyserInstance = (GeyserImpl) this.geyserApi();
+        if (config.cluster() != null && config.cluster().enabled()) {
+            startCluster(geyserInstance, config.cluster());
+        }
+
+        if (config.ping() != null && config.ping().enabled()) {
+            // Show the whole cluster's players if asked, otherwise just ours
+            boolean clusterCount = cluster != null && config.ping().clusterPlayerCount();
+            pingCache = new PingCache(config.ping(), geyserInstance.getScheduledThread(),
+                () -> geyserInstance.config().motd().primaryMotd(), () -> geyserInstance.config().motd().secondaryMotd(),
+                clusterCount ? cluster::totalPlayers : () -> this.geyserApi().onlineConnectionsCount(),
+                clusterCount ? cluster::totalMaxPlayers : () -> geyserInstance.config().motd().maxPlayers());
+        }
+
+        registerMetrics();
+        if (config.metrics() != null && config.metrics().enabled()) {
+            SessionTraces.slowThreshold(config.metrics().slowSessionSeconds());
+            metricsServer = MetricsServer.start(config.metrics());
+        }
 
         // Remove all saved logins to prevent issues connecting
         // Maybe worth adding support for this later
@@ -126,20 +286,210 @@ public class GeyserConnect implements Extension {
             this.logger().error("auth-type is not set to 'online' in the Geyser config, this will break GeyserConnect. Disabling!");
             this.disable();
         }
+
+        this.logger().info("Started in " + timer.elapsedMillis() + "ms (" + timer.summary() + (storageReady.isDone() ? "" : ", storage still connecting") + ")");
+    }
+
+    private void startCluster(GeyserImpl geyserInstance, ClusterSection section) {
+        if (section.address() == null || section.address().isBlank()) {
+            this.logger().warning("The cluster needs the address other nodes send players to this one on, not joining the cluster");
+            return;
+        }
+
+        ClusterMembership membership;
+        try {
+            membership = Cluster.membership(this, section);
+        } catch (IOException e) {
+            this.logger().severe("Failed to set up cluster membership, not joining the cluster", e);
+            return;
+        }
+
+        int port = section.port() > 0 ? section.port() : geyserInstance.config().bedrock().port();
+        cluster = new Cluster(this, section, membership, port, () -> this.geyserApi().onlineConnectionsCount(),
+            () -> geyserInstance.config().motd().maxPlayers());
+        cluster.start();
+    }
+
+    /**
+     * Expose the counters kept by the rest of GeyserConnect, replacing any from before a restart
+     */
+    private void registerMetrics() {
+        Metrics.clearSamples();
+
+        Metrics.gauge("geyserconnect_menu_sessions", "Players currently in the menu", Metrics::menuSessions);
+        Metrics.gauge("geyserconnect_sessions_in_progress", "Sessions that have joined but not yet been sent to a server", SessionTraces::inProgress);
+        Metrics.gauge("geyserconnect_server_manager_players", "Players with their custom servers loaded", ServerManager::size);
+        Metrics.gauge("geyserconnect_storage_saves_in_progress", "Players leaving whose custom servers are being saved", ServerManager::savesInProgress);
+        Metrics.gauge("geyserconnect_global_servers", "Global servers in the directory", () -> serverDirectory().servers().size());
+
+        Metrics.counter("geyserconnect_admission_total", "Players through the join queue by result", () -> admissionController.admittedCount(), "result", "admitted");
+        Metrics.counter("geyserconnect_admission_total", "Players through the join queue by result", () -> admissionController.queuedCount(), "result", "queued");
+        Metrics.counter("geyserconnect_admission_total", "Players through the join queue by result", () -> admissionController.rejectedCount(), "result", "rejected");
+        Metrics.gauge("geyserconnect_admission_queue_length", "Players waiting in the join queue", () -> admissionController.queueLength());
+        Metrics.gauge("geyserconnect_admission_max_wait_seconds", "Longest time a player has waited in the join queue", () -> admissionController.maxWaitMillis() / 1000D);
+
+        Metrics.counter("geyserconnect_dns_lookups_total", "Java hand offs by whether the address was already looked up, and lookups shared", () -> dnsCache.hits(), "result", "hit");
+        Metrics.counter("geyserconnect_dns_lookups_total", "Java hand offs by whether the address was already looked up, and lookups shared", () -> dnsCache.misses(), "result", "miss");
+        Metrics.counter("geyserconnect_dns_lookups_total", "Java hand offs by whether the address was already looked up, and lookups shared", () -> dnsCache.coalesced(), "result", "coalesced");
+        Metrics.counter("geyserconnect_dns_failures_total", "DNS lookups that failed", () -> dnsCache.failures());
+        Metrics.gauge("geyserconnect_dns_cache_size", "Hosts in the DNS cache", () -> dnsCache.size());
+        Metrics.counter("geyserconnect_dns_speculations_total", "Speculative DNS lookups started", () -> speculativeWarmup.started());
+        Metrics.counter("geyserconnect_dns_speculation_hits_total", "Java hand offs to a host that was looked up speculatively", () -> speculativeWarmup.speculationHits());
+
+        Metrics.counter("geyserconnect_lobby_packets_total", "Packets sent to players in lobby mode", LobbyMode::totalPackets);
+        Metrics.counter("geyserconnect_lobby_bytes_total", "Bytes sent to players in lobby mode", LobbyMode::totalBytes);
+        Metrics.counter("geyserconnect_lobby_suppressed_total", "Packets not sent to players in lobby mode", LobbyMode::totalSuppressed);
+
+        Metrics.counter("geyserconnect_form_image_fixes_total", "Form image workaround packets sent", FormImageWorkaround::firedCount);
+        Metrics.counter("geyserconnect_form_image_fixes_coalesced_total", "Form image workaround requests merged into an update already waiting", FormImageWorkaround::coalescedCount);
+        Metrics.counter("geyserconnect_reloads_total", "Successful config reloads", () -> reloadManager.reloads());
+
+        if (serverFeed != null) {
+            Metrics.counter("geyserconnect_server_feed_polls_total", "Times the server feed was checked", () -> serverFeed.polls());
+            Metrics.counter("geyserconnect_server_feed_not_modified_total", "Server feed checks that found nothing new", () -> serverFeed.notModified());
+            Metrics.counter("geyserconnect_server_feed_updates_total", "Server feed checks that changed the global servers", () -> serverFeed.updates());
+            Metrics.counter("geyserconnect_server_feed_failures_total", "Server feed checks that failed", () -> serverFeed.failures());
+        }
+        if (cluster != null) {
+            Metrics.gauge("geyserconnect_cluster_nodes", "Other cluster nodes that have sent a heartbeat recently", () -> cluster.aliveNodes().size());
+            Metrics.counter("geyserconnect_cluster_redirects_total", "Players sent to another cluster node", () -> cluster.redirects());
+            Metrics.counter("geyserconnect_cluster_heartbeat_failures_total", "Cluster heartbeats that couldn't be sent", () -> cluster.failures());
+            Metrics.gauge("geyserconnect_cluster_players", "Players across every live cluster node", () -> cluster.totalPlayers());
+        }
+        if (pingCache != null) {
+            Metrics.counter("geyserconnect_pings_total", "Pings answered from the cached response", () -> pingCache.pings());
+            Metrics.counter("geyserconnect_ping_refreshes_total", "Times the cached ping response was rebuilt", () -> pingCache.refreshes());
+        }
+
+        // The server as a whole, so a load test can see what the players cost
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            Metrics.counter("process_cpu_seconds_total", "CPU time used by the server process", () -> os.getProcessCpuTime() / 1e9);
+        }
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Metrics.gauge("jvm_memory_used_bytes", "Memory used by the server", () -> memory.getHeapMemoryUsage().getUsed(), "area", "heap");
+        Metrics.gauge("jvm_memory_max_bytes", "Memory the server may use", () -> memory.getHeapMemoryUsage().getMax(), "area", "heap");
+    }
+
+    @Subscribe
+    public void onShutdown(GeyserShutdownEvent event) {
+        // Stop everything that runs in the background first
+        TransferJob job = transferJob.getAndSet(null);
+        if (job != null) {
+            job.cancel();
+        }
+        if (reloadManager != null) {
+            reloadManager.shutdown();
+        }
+        if (serverFeed != null) {
+            serverFeed.shutdown();
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (dnsCache != null) {
+            dnsCache.shutdown();
+        }
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+        if (pingCache != null) {
+            pingCache.shutdown();
+        }
+        FormImageWorkaround.shutdown();
+
+        if (storageManager != null) {
+            flushStorage();
+        }
+    }
+
+    /**
+     * Save everyone still loaded and close storage. By now Geyser has kicked everyone, so players are
+     * saving as they disconnect, we save whoever is left alongside them in batches and stop at the deadline.
+     */
+    private void flushStorage() {
+        int timeout = config().customServers().shutdownTimeout() > 0 ? config().customServers().shutdownTimeout() : DEFAULT_SHUTDOWN_TIMEOUT;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+
+        try {
+            storageReady.get(timeout, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            this.logger().warning("Storage was never ready so there is nothing to save");
+            return;
+        }
+
+        // Players that leave from now on are in the snapshot so don't need saving again as they go
+        ServerManager.close();
+        List<PlayerServers> players = ServerManager.snapshot();
+
+        if (!players.isEmpty()) {
+            StorageFlusher.Result result = StorageFlusher.flush(storageManager, players, deadline);
+            this.logger().info("Saved custom servers for " + result.saved().size() + " of " + result.total() + " players in " + result.millis() + "ms");
+
+            List<PlayerServers> unsaved = result.unsaved();
+            if (!unsaved.isEmpty()) {
+                this.logger().warning("Couldn't save custom servers for " + unsaved.size() + " players (" + result.failed().size() + " failed, "
+                    + result.abandoned().size() + " out of time): " + unsaved.stream().map(player -> Utils.displayName(player.session())).collect(Collectors.joining(", ")));
+            }
+        }
+
+        // Let saves started by players leaving finish before the storage goes away
+        while (ServerManager.savesInProgress() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (ServerManager.savesInProgress() > 0) {
+            this.logger().warning(ServerManager.savesInProgress() + " players were still being saved when storage was closed");
+        }
+
+        storageManager.closeStorage();
     }
 
     @Subscribe
     public void onSessionInitialize(SessionInitializeEvent event) {
         GeyserSession session = (GeyserSession) event.connection();
+        Metrics.JOINS.increment();
+        Metrics.JOIN_RATE.record();
+        // Nobody else gets in once the whole cluster is at its cap, there is nowhere to send them
+        if (cluster != null && cluster.capReached()) {
+            session.disconnect("disconnectionScreen.serverFull");
+            return;
+        }
+
+        NodeStatus redirect = null;
         if (config().hardPlayerLimit()) {
             if (session.getGeyser().onlineConnectionsCount() >= session.getGeyser().config().motd().maxPlayers()) {
-                session.disconnect("disconnectionScreen.serverFull");
+                // Send them to another node with room if we are in a cluster
+                redirect = cluster != null ? cluster.leastLoaded(false) : null;
+                if (redirect == null) {
+                    session.disconnect("disconnectionScreen.serverFull");
+                    return;
+                }
             }
         }
 
+        // Don't let anyone else start joining if the join queue is already full
+        // Players being sent to another node skip the queue as they never get a menu here
+        if (redirect == null && !admissionController.hasCapacity()) {
+            session.disconnect("disconnectionScreen.serverFull");
+            return;
+        }
+
         // Change the packet handler to our own
         BedrockPacketHandler packetHandler = session.getUpstream().getSession().getPacketHandler();
-        session.getUpstream().getSession().setPacketHandler(new PacketHandler(this, session, packetHandler));
+        PacketHandler handler = new PacketHandler(this, session, packetHandler);
+        handler.redirect(redirect);
+        session.getUpstream().getSession().setPacketHandler(handler);
+    }
+
+    @Subscribe
+    public void onBedrockPing(GeyserBedrockPingEvent event) {
+        if (pingCache != null) {
+            pingCache.apply(event);
+        }
     }
 
     @Subscribe
@@ -152,6 +502,16 @@ public class GeyserConnect implements Extension {
             .description("Take you back to the GeyserConnect menu.")
             .executor((source, command, args) -> {
                 GeyserSession session = (GeyserSession) source;
+
+                // Send them to whichever node has the most room
+                if (cluster != null) {
+                    NodeStatus node = cluster.leastLoaded(true);
+                    if (node != null && !cluster.isSelf(node)) {
+                        cluster.send(session, node);
+                        return;
+                    }
+                }
+
                 String serverAddress = session.getClientData().getServerAddress();
                 String ip = serverAddress.split(":")[0];
                 int port = 19132;
@@ -185,74 +545,133 @@ public class GeyserConnect implements Extension {
                     return;
                 }
 
-                List<GeyserSession> sessions = getGeyserSessions();
-
+                // Build what we are sending once and share it between every session
+                Consumer<GeyserSession> sender;
                 switch (type) {
                     case "chat":
-                        for (GeyserSession session : sessions) {
-                            session.sendMessage(message);
-                        }
+                        TextPacket textPacket = new TextPacket();
+                        textPacket.setPlatformChatId("");
+                        textPacket.setSourceName("");
+                        textPacket.setXuid("");
+                        textPacket.setType(TextPacket.Type.CHAT);
+                        textPacket.setNeedsTranslation(false);
+                        textPacket.setMessage(message);
+                        sender = session -> session.sendUpstreamPacket(textPacket);
                         break;
                     case "gui":
-                        for (GeyserSession session : sessions) {
-                            session.sendForm(CustomForm.builder()
-                                .title("Notice")
-                                .label(message)
-                                .build());
-                        }
+                        CustomForm form = CustomForm.builder()
+                            .title("Notice")
+                            .label(message)
+                            .build();
+                        sender = session -> session.sendForm(form);
                         break;
                     default:
                         source.sendMessage("Invalid message type. Valid types: chat, gui");
                         return;
                 }
+
+                Broadcast broadcast = Broadcast.send(getGeyserSessions(), sender);
+                source.sendMessage("Sending message to " + broadcast.total() + " players across " + broadcast.eventLoops() + " event loops");
+                broadcast.future().thenAccept(completed -> source.sendMessage("Message sent: " + completed.summary()));
             })
             .build());
 
 
         event.register(Command.builder(this)
             .source(CommandSource.class)
-            .name("transferall")
-            .description("Transfer everyone connected to this GeyserConnect server to another.")
+            .name("reload")
+            .description("Reload the GeyserConnect config, servers and language files.")
             .executor((source, command, args) -> {
                 if (!source.isConsole()) {
                     source.sendMessage("This command can only be ran from the console.");
                     return;
                 }
 
-                String ip = args[0].toLowerCase();
-                int port = 19132;
-                boolean passAsVhost = args.length > 1 && Boolean.parseBoolean(args[1]);
-
-                // Split the ip and port if needed
-                String[] parts = ip.split(":");
-                ip = parts[0];
-                if (parts.length > 1) {
-                    try {
-                        port = Integer.parseInt(parts[1]);
-                    } catch (NumberFormatException ignored) {
+                source.sendMessage("Reloading...");
+                reloadManager.reload().whenComplete((summary, throwable) -> {
+                    if (throwable != null) {
+                        Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                        source.sendMessage("Reload failed, keeping the current config: " + cause.getMessage());
+                    } else {
+                        source.sendMessage("Reloaded: " + summary);
                     }
+                });
+            })
+            .build());
+
+        event.register(Command.builder(this)
+            .source(CommandSource.class)
+            .name("stats")
+            .description("Show how this GeyserConnect server is doing.")
+            .executor((source, command, args) -> {
+                if (!source.isConsole()) {
+                    source.sendMessage("This command can only be ran from the console.");
+                    return;
+                }
+
+                for (String line : StatsReport.lines(this, this.geyserApi().onlineConnectionsCount())) {
+                    source.sendMessage(line);
+                }
+            })
+            .build());
+
+        event.register(Command.builder(this)
+            .source(CommandSource.class)
+            .name("transferall")
+            .description("Transfer everyone connected to this GeyserConnect server to others.")
+            .executor((source, command, args) -> {
+                if (!source.isConsole()) {
+                    source.sendMessage("This command can only be ran from the console.");
+                    return;
                 }
 
-                for (GeyserSession session : getGeyserSessions()) {
-                    String sessionIp = ip;
+                if (args.length == 0) {
+                    source.sendMessage("Usage: transferall <ip[:port][*weight],...> [passAsVhost] [playersPerSecond], transferall status or transferall cancel");
+                    return;
+                }
 
-                    // If we are passing with a vhost construct the vhost
-                    if (passAsVhost) {
-                        sessionIp = session.remoteServer().address();
-                        sessionIp += "._p" + session.remoteServer().port();
-                        if (session.remoteServer().authType() == AuthType.OFFLINE) {
-                            sessionIp += "._o";
+                TransferJob currentJob = transferJob.get();
+                switch (args[0].toLowerCase()) {
+                    case "status":
+                        source.sendMessage(currentJob == null ? "No transfer has been started." : "Transfer " + currentJob.status());
+                        return;
+                    case "cancel":
+                        if (currentJob == null || !currentJob.running()) {
+                            source.sendMessage("There is no transfer running.");
+                        } else {
+                            currentJob.cancel();
+                            source.sendMessage("Transfer " + currentJob.status());
                         }
-                        sessionIp += "." + ip;
-                    }
+                        return;
+                }
 
-                    GeyserConnect.instance().logger().info("Sending " + Utils.displayName(session) + " to " + sessionIp + (port != 19132 ? ":" + port : ""));
+                if (currentJob != null && currentJob.running()) {
+                    source.sendMessage("A transfer is already running, use 'transferall cancel' to stop it first.");
+                    return;
+                }
 
-                    TransferPacket transferPacket = new TransferPacket();
-                    transferPacket.setAddress(sessionIp);
-                    transferPacket.setPort(port);
-                    session.sendUpstreamPacket(transferPacket);
+                List<TransferTarget> targets = new ArrayList<>();
+                int playersPerSecond = config().transferRate() > 0 ? config().transferRate() : DEFAULT_TRANSFER_RATE;
+                try {
+                    for (String target : args[0].split(",")) {
+                        targets.add(TransferTarget.parse(target));
+                    }
+
+                    if (args.length > 2) {
+                        playersPerSecond = Integer.parseInt(args[2]);
+                    }
+                } catch (IllegalArgumentException e) {
+                    source.sendMessage(e.getMessage());
+                    return;
                 }
+
+                boolean passAsVhost = args.length > 1 && Boolean.parseBoolean(args[1]);
+
+                TransferJob job = new TransferJob(getGeyserSessions(), targets, passAsVhost, playersPerSecond);
+                transferJob.set(job);
+                job.start(((GeyserImpl) this.geyserApi()).getScheduledThread());
+
+                source.sendMessage("Started transfer at " + job.playersPerSecond() + " players per second: " + job.status());
             })
             .build());
     }
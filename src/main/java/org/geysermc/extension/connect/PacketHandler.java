@@ -1,34 +1,41 @@
 package org.geysermc.extension.connect;
 
-import org.cloudburstmc.protocol.bedrock.data.AttributeData;
 import org.cloudburstmc.protocol.bedrock.packet.BedrockPacketHandler;
+import org.cloudburstmc.protocol.bedrock.packet.ModalFormResponsePacket;
 import org.cloudburstmc.protocol.bedrock.packet.NetworkStackLatencyPacket;
+import org.cloudburstmc.protocol.bedrock.packet.RequestChunkRadiusPacket;
 import org.cloudburstmc.protocol.bedrock.packet.ResourcePackChunkRequestPacket;
 import org.cloudburstmc.protocol.bedrock.packet.ResourcePackClientResponsePacket;
 import org.cloudburstmc.protocol.bedrock.packet.SetLocalPlayerAsInitializedPacket;
-import org.cloudburstmc.protocol.bedrock.packet.UpdateAttributesPacket;
 import org.cloudburstmc.protocol.common.PacketSignal;
-import org.geysermc.extension.connect.config.VirtualHostSection;
+import org.geysermc.extension.connect.cluster.NodeStatus;
+import org.geysermc.extension.connect.lobby.LobbyMode;
+import org.geysermc.extension.connect.metrics.Metrics;
+import org.geysermc.extension.connect.metrics.SessionTrace;
+import org.geysermc.extension.connect.metrics.SessionTraces;
+import org.geysermc.extension.connect.ui.FormImageWorkaround;
+import org.geysermc.extension.connect.ui.SessionBudget;
 import org.geysermc.extension.connect.ui.UIHandler;
 import org.geysermc.extension.connect.utils.Server;
 import org.geysermc.extension.connect.utils.ServerManager;
 import org.geysermc.extension.connect.utils.Utils;
-import org.geysermc.geyser.entity.attribute.GeyserAttributeType;
+import org.geysermc.extension.connect.vhost.VirtualHostRouter;
 import org.geysermc.geyser.network.UpstreamPacketHandler;
 import org.geysermc.geyser.session.GeyserSession;
 import org.geysermc.geyser.util.DimensionUtils;
 
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class PacketHandler extends UpstreamPacketHandler {
 
     private final GeyserSession session;
     private final GeyserConnect geyserConnect;
     private final BedrockPacketHandler originalPacketHandler;
+    private final FormImageWorkaround formImageWorkaround;
+    private final SessionBudget budget;
+    private UIHandler uiHandler;
+    private NodeStatus redirect;
+    private boolean delayedResponse;
 
     public PacketHandler(GeyserConnect geyserConnect, GeyserSession session, BedrockPacketHandler packetHandler) {
         super(session.getGeyser(), session);
@@ -36,65 +43,89 @@ public class PacketHandler extends UpstreamPacketHandler {
         this.session = session;
         this.geyserConnect = geyserConnect;
         this.originalPacketHandler = packetHandler;
+        this.formImageWorkaround = new FormImageWorkaround(session);
+        this.budget = new SessionBudget(geyserConnect.config().limits());
 
         // Spawn the player in the end (it just looks better)
         DimensionUtils.setBedrockDimension(session, 2);
+
+        LobbyMode.start(session);
+        Metrics.menuSessionStarted();
+        SessionTraces.start(session);
+
+        // If they are joining through a virtual host start looking it up while they load in
+        VirtualHostRouter.Route route = geyserConnect.virtualHostRouter().route(session.getClientData().getServerAddress());
+        if (route.type() == VirtualHostRouter.Route.Type.TARGET) {
+            geyserConnect.speculativeWarmup().onVirtualHost(route.server());
+        }
+    }
+
+    /**
+     * Send the player on to another node once they have loaded in instead of showing the menu
+     *
+     * @param node The node to send them to
+     */
+    public void redirect(NodeStatus node) {
+        this.redirect = node;
     }
 
     public void onDisconnect(String reason) {
         // The user has disconnected without having connected to an actual server. If they have connected to
         // a server (transfer packet or geyser proxy), then the original packet handler has been restored.
+        geyserConnect.admissionController().remove(session);
         ServerManager.unloadServers(session);
+        LobbyMode.finish(session);
+        Metrics.menuSessionEnded();
+        SessionTraces.abandon(session);
         originalPacketHandler.onDisconnect(reason);
     }
 
     @Override
     public PacketSignal handle(SetLocalPlayerAsInitializedPacket packet) {
         geyserConnect.logger().debug("Player initialized: " + Utils.displayName(session));
+        SessionTraces.mark(session, SessionTrace.Phase.INITIALIZED);
+
+        if (redirect != null) {
+            // This node is full so they don't get a menu here
+            geyserConnect.cluster().send(session, redirect);
+            return PacketSignal.HANDLED;
+        }
+
+        // Wait for our turn before doing anything expensive
+        geyserConnect.admissionController().admit(session, () -> onInitialized(packet));
+
+        return PacketSignal.HANDLED;
+    }
+
+    private void onInitialized(SetLocalPlayerAsInitializedPacket packet) {
+        SessionTraces.mark(session, SessionTrace.Phase.ADMITTED);
 
         // Handle the virtual host if specified
-        VirtualHostSection vhost = geyserConnect.config().vhost();
-        if (vhost.enabled()) {
-            String domain = session.getClientData().getServerAddress();
-
-            // Build the regex matcher for the vhosts
-            Pattern regex = Pattern.compile("\\.?(" + vhost.domains().stream().map(Pattern::quote).collect(Collectors.joining("|")) + ")(:[0-9]+)?$");
-
-            if (regex.matcher(domain).find()) {
-                String target = domain.replaceAll(regex.pattern(), "").strip();
-                if (!target.isEmpty()) {
-                    String address = "";
-                    int port = 25565;
-                    boolean online = true;
-
-                    // Parse the address used
-                    String[] domainParts = target.split("\\._");
-                    for (int i = 0; i < domainParts.length; i++) {
-                        String part = domainParts[i];
-                        if (i == 0) {
-                            address = part;
-                        } else if (part.startsWith("p")) {
-                            port = Integer.parseInt(part.substring(1));
-                        } else if (part.startsWith("o")) {
-                            online = false;
-                        }
-                    }
-
-                    // They didn't specify an address so disconnect them
-                    if (address.startsWith("_")) {
-                        session.disconnect("disconnectionScreen.invalidIP");
-                        return PacketSignal.HANDLED;
-                    }
-
-                    // Log the virtual host usage
-                    geyserConnect.logger().info(Utils.displayName(session) + " is using virtualhost: " + address + ":" + port + (!online ? " (offline)" : ""));
-
-                    // Send the player to the wanted server
-                    Utils.sendToServer(session, originalPacketHandler, new Server(address, port, online, false, null, null, null));
-
-                    return PacketSignal.HANDLED;
+        VirtualHostRouter.Route route = geyserConnect.virtualHostRouter().route(session.getClientData().getServerAddress());
+        switch (route.type()) {
+            case INVALID:
+                // They didn't specify a usable address so disconnect them
+                session.disconnect("disconnectionScreen.invalidIP");
+                return;
+            case TARGET:
+                Server server = route.server();
+
+                // Log the virtual host usage
+                geyserConnect.logger().info(Utils.displayName(session) + " is using virtualhost: " + server.address() + ":" + server.port() + (!server.online() ? " (offline)" : ""));
+
+                // Send the player to the wanted server
+                Utils.sendToServer(session, originalPacketHandler, server, Metrics.Transfer.VHOST);
+                return;
+        }
+
+        // If we have only just started the database may still be connecting
+        if (!geyserConnect.storageReady().isDone()) {
+            geyserConnect.storageReady().whenCompleteAsync((ignored, throwable) -> {
+                if (!session.isClosed()) {
+                    onInitialized(packet);
                 }
-            }
+            }, session.getEventLoop());
+            return;
         }
 
         // Handle normal connections
@@ -104,25 +135,67 @@ public class PacketHandler extends UpstreamPacketHandler {
 
                 // Load the players servers
                 ServerManager.loadServers(session);
+                SessionTraces.mark(session, SessionTrace.Phase.SERVERS_LOADED);
 
-                UIHandler uiHandler = new UIHandler(session, originalPacketHandler);
+                uiHandler = new UIHandler(session, originalPacketHandler, budget);
                 uiHandler.initialiseSession();
             }
         }
+    }
 
-        return PacketSignal.HANDLED;
+    @Override
+    public PacketSignal handle(ModalFormResponsePacket packet) {
+        if (budget.exhausted()) {
+            // Nobody clicking through the menu gets refused this often
+            geyserConnect.logger().warning("Disconnecting " + Utils.displayName(session) + " after " + budget.rejections() + " refused menu actions");
+            session.disconnect("disconnectionScreen.disconnected");
+            return PacketSignal.HANDLED;
+        }
+
+        long delay = budget.formResponseDelay();
+        if (delay > 0) {
+            if (delayedResponse) {
+                // They only have one form open, so a second answer while one waits is a script
+                budget.reject(Metrics.Rejection.FORM_RATE);
+                return PacketSignal.HANDLED;
+            }
+
+            // Answer it once they are back within their budget, so they aren't left without a menu
+            delayedResponse = true;
+            Metrics.FORMS_DELAYED.increment();
+            session.getEventLoop().schedule(() -> {
+                delayedResponse = false;
+                if (!session.isClosed()) {
+                    handle(packet);
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+            return PacketSignal.HANDLED;
+        }
+
+        if (uiHandler != null) {
+            uiHandler.formResponded();
+        }
+
+        return super.handle(packet);
     }
 
     @Override
     public PacketSignal handle(NetworkStackLatencyPacket packet) {
         // This is to fix a bug in the client where it doesn't load form images
-        UpdateAttributesPacket updateAttributesPacket = new UpdateAttributesPacket();
-        updateAttributesPacket.setRuntimeEntityId(1);
-        List<AttributeData> attributes = Collections.singletonList(GeyserAttributeType.EXPERIENCE_LEVEL.getAttribute(0f));
-        updateAttributesPacket.setAttributes(attributes);
-
         // Doesn't work 100% of the time but fixes it most of the time
-        session.getGeyser().getScheduledThread().schedule(() -> session.sendUpstreamPacket(updateAttributesPacket), 500, TimeUnit.MILLISECONDS);
+        formImageWorkaround.schedule();
+
+        return super.handle(packet);
+    }
+
+    @Override
+    public PacketSignal handle(RequestChunkRadiusPacket packet) {
+        if (LobbyMode.enabled()) {
+            // Remember what they wanted for when they join a server, but only give them what the menu needs
+            session.setClientRenderDistance(packet.getRadius());
+            LobbyMode.sendChunkRadius(session, packet.getRadius());
+            return PacketSignal.HANDLED;
+        }
 
         return super.handle(packet);
     }
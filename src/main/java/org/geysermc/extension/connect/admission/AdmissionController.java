@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.admission;
+
+import org.geysermc.cumulus.form.SimpleForm;
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.config.AdmissionSection;
+import org.geysermc.extension.connect.language.Language;
+import org.geysermc.extension.connect.utils.Utils;
+import org.geysermc.geyser.session.GeyserSession;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits how fast players get past login, so a storm of joins doesn't all hit storage and the menus at once.
+ * <p>
+ * Players get through straight away while there are tokens in the bucket, after that they wait in a
+ * bounded FIFO queue with a simple form showing their position.
+ */
+public class AdmissionController {
+    private static final long DRAIN_INTERVAL_MILLIS = 50;
+    private static final long FORM_UPDATE_MILLIS = 5000;
+
+    private final boolean enabled;
+    private final int queueSize;
+    private final TokenBucket bucket;
+    private final Deque<Ticket> queue = new ArrayDeque<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+    private final LongAdder totalWaitMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    public AdmissionController(AdmissionSection section, ScheduledExecutorService scheduler) {
+        this.enabled = section != null && section.enabled();
+        this.queueSize = enabled ? Math.max(0, section.queueSize()) : 0;
+        this.bucket = enabled ? new TokenBucket(Math.max(0.1, section.joinsPerSecond()), section.burst()) : null;
+
+        if (enabled) {
+            scheduler.scheduleAtFixedRate(this::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Check if there is room for another player to wait, used before the session gets any further
+     *
+     * @return If the queue has space
+     */
+    public synchronized boolean hasCapacity() {
+        return !enabled || queue.size() < queueSize;
+    }
+
+    /**
+     * Let the session carry on now or queue it until there is capacity
+     *
+     * @param session The session joining
+     * @param action What to run once they are let in, run on the session's event loop
+     */
+    public void admit(GeyserSession session, Runnable action) {
+        if (!enabled) {
+            action.run();
+            return;
+        }
+
+        Ticket ticket;
+        synchronized (this) {
+            // They are already waiting, the client can send its initialized packet more than once
+            for (Ticket waiting : queue) {
+                if (waiting.session == session) {
+                    return;
+                }
+            }
+
+            // Only skip the queue if nobody else is waiting
+            if (queue.isEmpty() && bucket.tryAcquire()) {
+                admitted.increment();
+                ticket = null;
+            } else if (queue.size() >= queueSize) {
+                rejected.increment();
+                session.disconnect("disconnectionScreen.serverFull");
+                return;
+            } else {
+                ticket = new Ticket(session, action, System.currentTimeMillis());
+                queue.addLast(ticket);
+                queued.increment();
+                ticket.position = queue.size();
+            }
+        }
+
+        if (ticket == null) {
+            action.run();
+        } else {
+            GeyserConnect.instance().logger().debug("Queued " + Utils.displayName(session) + " at position " + ticket.position);
+            sendQueueForm(ticket);
+        }
+    }
+
+    /**
+     * Remove a session from the queue, such as when they disconnect
+     *
+     * @param session The session to remove
+     */
+    public synchronized void remove(GeyserSession session) {
+        queue.removeIf(ticket -> ticket.session == session);
+    }
+
+    private void drain() {
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            while (!queue.isEmpty()) {
+                Ticket ticket = queue.peekFirst();
+                if (ticket.session.isClosed()) {
+                    queue.pollFirst();
+                    continue;
+                }
+
+                if (!bucket.tryAcquire()) {
+                    break;
+                }
+
+                queue.pollFirst();
+                ticket.admitted = true;
+                admitted.increment();
+
+                long waitMillis = now - ticket.queuedAt;
+                waited.increment();
+                totalWaitMillis.add(waitMillis);
+                maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+
+                ticket.session.getEventLoop().execute(() -> {
+                    // Get rid of the queue form before the real menu is shown
+                    ticket.session.closeForm();
+                    ticket.action.run();
+                });
+            }
+
+            // Let people know they have moved up, but not so often it costs more than it helps
+            int position = 0;
+            Iterator<Ticket> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                Ticket ticket = iterator.next();
+                position++;
+
+                if (ticket.position != position && now - ticket.lastFormUpdate >= FORM_UPDATE_MILLIS) {
+                    ticket.position = position;
+                    ticket.session.getEventLoop().execute(() -> {
+                        ticket.session.closeForm();
+                        sendQueueForm(ticket);
+                    });
+                }
+            }
+        }
+    }
+
+    private void sendQueueForm(Ticket ticket) {
+        if (ticket.admitted || ticket.session.isClosed()) {
+            return;
+        }
+
+        ticket.lastFormUpdate = System.currentTimeMillis();
+        int generation = ++ticket.formGeneration;
+
+        Language lang = GeyserConnect.instance().languageManager().language(ticket.session.locale());
+        ticket.session.sendForm(SimpleForm.builder()
+            .title(lang.get("ui.title.queue"))
+            .content(lang.getMessage("ui.content.queue", ticket.position))
+            .button(lang.get("ui.button.disconnect"))
+            .closedOrInvalidResultHandler(response -> {
+                // Keep something on screen while they wait, unless we closed it to show a newer one
+                if (generation == ticket.formGeneration) {
+                    sendQueueForm(ticket);
+                }
+            })
+            .validResultHandler(response -> {
+                remove(ticket.session);
+                ticket.session.disconnect("disconnectionScreen.disconnected");
+            }));
+    }
+
+    public synchronized int queueLength() {
+        return queue.size();
+    }
+
+    public long admittedCount() {
+        return admitted.sum();
+    }
+
+    public long queuedCount() {
+        return queued.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return The average time spent in the queue by players that have been let in after waiting
+     */
+    public long averageWaitMillis() {
+        long count = waited.sum();
+        return count == 0 ? 0 : totalWaitMillis.sum() / count;
+    }
+
+    public long maxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    private static class Ticket {
+        private final GeyserSession session;
+        private final Runnable action;
+        private final long queuedAt;
+
+        private volatile int position;
+        private volatile long lastFormUpdate;
+        private volatile int formGeneration;
+        private volatile boolean admitted;
+
+        private Ticket(GeyserSession session, Runnable action, long queuedAt) {
+            this.session = session;
+            this.action = action;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.cluster;
+
+import org.cloudburstmc.protocol.bedrock.packet.TransferPacket;
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.config.ClusterSection;
+import org.geysermc.extension.connect.metrics.Metrics;
+import org.geysermc.extension.connect.utils.Utils;
+import org.geysermc.geyser.session.GeyserSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Keeps this node's status published to the rest of the cluster and a view of the other nodes,
+ * so players can be sent to whichever node has the most room
+ */
+public class Cluster {
+    public static final int DEFAULT_HEARTBEAT_INTERVAL = 5;
+    public static final String DEFAULT_DIRECTORY = "cluster";
+
+    private static final Comparator<NodeStatus> LEAST_LOADED = Comparator.comparingDouble(NodeStatus::load).thenComparingInt(NodeStatus::players);
+
+    private final GeyserConnect geyserConnect;
+    private final ClusterMembership membership;
+    private final String nodeId;
+    private final String address;
+    private final int port;
+    private final int heartbeatInterval;
+    private final long nodeTimeoutNanos;
+    private final IntSupplier players;
+    private final IntSupplier maxPlayers;
+    private final int playerCap;
+    private final ScheduledExecutorService executor;
+
+    // Written on the heartbeat thread, read by anyone picking a node
+    private volatile List<Peer> others = List.of();
+    private boolean failing;
+
+    private final LongAdder heartbeats = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder redirects = new LongAdder();
+
+    /**
+     * @param geyserConnect The extension
+     * @param section The cluster config
+     * @param membership How to find the other nodes
+     * @param port The port players connect to this node on
+     * @param players How many players are on this node
+     * @param maxPlayers How many players this node takes
+     */
+    public Cluster(GeyserConnect geyserConnect, ClusterSection section, ClusterMembership membership, int port, IntSupplier players, IntSupplier maxPlayers) {
+        this.geyserConnect = geyserConnect;
+        this.membership = membership;
+        this.address = section.address();
+        this.port = port;
+        this.nodeId = section.nodeId() != null && !section.nodeId().isBlank() ? section.nodeId() : address + ":" + port;
+        this.heartbeatInterval = section.heartbeatInterval() > 0 ? section.heartbeatInterval() : DEFAULT_HEARTBEAT_INTERVAL;
+        this.nodeTimeoutNanos = TimeUnit.SECONDS.toNanos(section.nodeTimeout() > 0 ? section.nodeTimeout() : heartbeatInterval * 3L);
+        this.players = players;
+        this.maxPlayers = maxPlayers;
+        this.playerCap = Math.max(section.maxPlayers(), 0);
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GeyserConnect Cluster Heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create the membership the config asks for
+     *
+     * @param geyserConnect The extension, for its data folder
+     * @param section The cluster config
+     * @return The membership
+     * @throws IOException If the shared folder couldn't be created
+     */
+    public static ClusterMembership membership(GeyserConnect geyserConnect, ClusterSection section) throws IOException {
+        if (section.membership() == ClusterMembership.Type.MEMORY) {
+            return new InProcessMembership();
+        }
+
+        String directory = section.directory() != null && !section.directory().isBlank() ? section.directory() : DEFAULT_DIRECTORY;
+        return new FileMembership(geyserConnect.dataFolder().resolve(directory));
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval, TimeUnit.SECONDS);
+        geyserConnect.logger().info("Joined the cluster as " + nodeId + ", sending a heartbeat every " + heartbeatInterval + " seconds");
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        membership.leave(nodeId);
+    }
+
+    private void heartbeat() {
+        try {
+            membership.publish(self());
+
+            Map<String, Peer> previous = new HashMap<>();
+            for (Peer peer : others) {
+                previous.put(peer.status().id(), peer);
+            }
+
+            // Judge when a node last published by when we saw its status change on our clock, so clocks can differ
+            long now = System.nanoTime();
+            List<Peer> peers = new ArrayList<>();
+            for (NodeStatus node : membership.nodes()) {
+                if (node.id().equals(nodeId)) {
+                    continue;
+                }
+
+                Peer last = previous.get(node.id());
+                if (last == null) {
+                    // It may have stopped long ago, so wait until it publishes again
+                    peers.add(new Peer(node, now, false));
+                } else if (node.updatedAt() != last.status().updatedAt()) {
+                    peers.add(new Peer(node, now, true));
+                } else {
+                    peers.add(new Peer(node, last.heardAt(), last.heard()));
+                }
+            }
+            others = List.copyOf(peers);
+            heartbeats.increment();
+
+            if (failing) {
+                failing = false;
+                geyserConnect.logger().info("Cluster heartbeat is working again");
+            }
+        } catch (Exception e) {
+            failures.increment();
+
+            // Only log the first failure so a broken share doesn't flood the console
+            if (!failing) {
+                failing = true;
+                geyserConnect.logger().warning("Cluster heartbeat failed, other nodes may stop sending players here: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return This node's status right now
+     */
+    public NodeStatus self() {
+        return new NodeStatus(nodeId, address, port, players.getAsInt(), maxPlayers.getAsInt(), (int) Metrics.menuSessions(), System.currentTimeMillis());
+    }
+
+    public boolean isSelf(NodeStatus node) {
+        return node.id().equals(nodeId);
+    }
+
+    /**
+     * @return The other nodes that have published recently
+     */
+    public List<NodeStatus> aliveNodes() {
+        long now = System.nanoTime();
+        List<NodeStatus> alive = new ArrayList<>();
+        for (Peer peer : others) {
+            if (peer.heard() && now - peer.heardAt() <= nodeTimeoutNanos) {
+                alive.add(peer.status());
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Pick the node with the most room
+     *
+     * @param includeSelf If this node can be picked
+     * @return The least loaded node that isn't full, or null if every node is full
+     */
+    public NodeStatus leastLoaded(boolean includeSelf) {
+        NodeStatus best = null;
+        for (NodeStatus node : aliveNodes()) {
+            if (!node.full() && (best == null || LEAST_LOADED.compare(node, best) < 0)) {
+                best = node;
+            }
+        }
+
+        if (includeSelf) {
+            // Prefer staying here when it's just as good
+            NodeStatus self = self();
+            if (!self.full() && (best == null || LEAST_LOADED.compare(self, best) <= 0)) {
+                best = self;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Players on every live node, counting this one as it is right now
+     */
+    public int totalPlayers() {
+        int total = players.getAsInt();
+        for (NodeStatus node : aliveNodes()) {
+            total += node.players();
+        }
+        return total;
+    }
+
+    /**
+     * @return The cluster wide cap if there is one, otherwise the max players of every live node added up
+     */
+    public int totalMaxPlayers() {
+        if (playerCap > 0) {
+            return playerCap;
+        }
+
+        int total = maxPlayers.getAsInt();
+        for (NodeStatus node : aliveNodes()) {
+            total += node.maxPlayers();
+        }
+        return total;
+    }
+
+    /**
+     * @return If there is a cluster wide cap and the cluster has reached it
+     */
+    public boolean capReached() {
+        return playerCap > 0 && totalPlayers() >= playerCap;
+    }
+
+    /**
+     * Transfer a player to another node
+     *
+     * @param session The player to send
+     * @param node The node to send them to
+     */
+    public void send(GeyserSession session, NodeStatus node) {
+        geyserConnect.logger().info("Sending " + Utils.displayName(session) + " to cluster node " + node.id());
+        Metrics.Transfer.CLUSTER.increment();
+        redirects.increment();
+
+        TransferPacket transferPacket = new TransferPacket();
+        transferPacket.setAddress(node.address());
+        transferPacket.setPort(node.port());
+        session.sendUpstreamPacket(transferPacket);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public long heartbeats() {
+        return heartbeats.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long redirects() {
+        return redirects.sum();
+    }
+
+    /**
+     * Another node as this one has seen it
+     *
+     * @param status What it last published
+     * @param heardAt The {@link System#nanoTime()} we first saw that status
+     * @param heard If we have seen it publish since we started watching, rather than just its last status
+     */
+    private record Peer(NodeStatus status, long heardAt, boolean heard) {
+    }
+}
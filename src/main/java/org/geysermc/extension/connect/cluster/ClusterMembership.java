@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.cluster;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * How the nodes in a cluster find each other and share their load. Each node publishes its own
+ * status on every heartbeat and reads back what the others last published.
+ */
+public interface ClusterMembership {
+
+    /**
+     * Tell the other nodes about this one
+     *
+     * @param status This node's current status
+     * @throws IOException If it couldn't be published
+     */
+    void publish(NodeStatus status) throws IOException;
+
+    /**
+     * @return The last status published by every node, including this one, however old
+     * @throws IOException If the other nodes couldn't be read
+     */
+    List<NodeStatus> nodes() throws IOException;
+
+    /**
+     * Remove this node from the cluster, when shutting down
+     *
+     * @param id This node's id
+     */
+    void leave(String id);
+
+    enum Type {
+        FILE("file"),
+        MEMORY("memory");
+
+        @JsonValue
+        private final String configName;
+
+        Type(String configName) {
+            this.configName = configName;
+        }
+
+        public String configName() {
+            return configName;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.cluster;
+
+import org.geysermc.extension.connect.utils.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Membership through a folder every node can see, such as a shared volume. Each node keeps its
+ * status in its own file, so no locking is needed.
+ */
+public class FileMembership implements ClusterMembership {
+    private static final String EXTENSION = ".json";
+
+    private final Path directory;
+
+    public FileMembership(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    @Override
+    public void publish(NodeStatus status) throws IOException {
+        // Write beside the file then swap it in so other nodes never read half of it
+        Path temp = Files.createTempFile(directory, fileName(status.id()), ".tmp");
+        try {
+            Utils.OBJECT_MAPPER.writeValue(temp.toFile(), status);
+            Files.move(temp, directory.resolve(fileName(status.id()) + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public List<NodeStatus> nodes() throws IOException {
+        List<NodeStatus> nodes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).toList()) {
+                try {
+                    nodes.add(Utils.OBJECT_MAPPER.readValue(file.toFile(), NodeStatus.class));
+                } catch (IOException ignored) {
+                    // Removed while we were reading, or not one of ours
+                }
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public void leave(String id) {
+        try {
+            Files.deleteIfExists(directory.resolve(fileName(id) + EXTENSION));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String fileName(String id) {
+        return id.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.cluster;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What a node last told the rest of the cluster about itself
+ *
+ * @param id The node's unique id
+ * @param address The address players connect to the node on
+ * @param port The port players connect to the node on
+ * @param players Players connected to the node
+ * @param maxPlayers How many players the node takes before it is full
+ * @param menuPlayers Players on the node that are in the menu rather than handed off
+ * @param updatedAt When this was published, in milliseconds since the epoch on the node's own clock,
+ *                  only compared with what the same node published before so the clocks don't need to agree
+ */
+public record NodeStatus(
+    String id,
+    String address,
+    int port,
+    int players,
+    @JsonProperty("max-players") int maxPlayers,
+    @JsonProperty("menu-players") int menuPlayers,
+    @JsonProperty("updated-at") long updatedAt) {
+
+    /**
+     * @return How full the node is, from 0 for empty to 1 for full
+     */
+    public double load() {
+        return maxPlayers > 0 ? (double) players / maxPlayers : 1;
+    }
+
+    public boolean full() {
+        return players >= maxPlayers;
+    }
+}
@@ -33,8 +33,20 @@ import java.util.List;
 public record Config(
     @JsonProperty("welcome-file") String welcomeFile,
     @JsonProperty("hard-player-limit") boolean hardPlayerLimit,
+    @JsonProperty("page-size") int pageSize,
+    @JsonProperty("transfer-rate") int transferRate,
+    AdmissionSection admission,
     List<Server> servers,
+    @JsonProperty("servers-file") String serversFile,
+    @JsonProperty("server-feed") ServerFeedSection serverFeed,
     @JsonProperty("custom-servers") CustomServersSection customServers,
     VirtualHostSection vhost,
-    String language) {
+    LobbySection lobby,
+    DnsSection dns,
+    MetricsSection metrics,
+    ClusterSection cluster,
+    PingSection ping,
+    LimitsSection limits,
+    String language,
+    @JsonProperty("watch-files") boolean watchFiles) {
 }
\ No newline at end of file
@@ -41,6 +41,8 @@ import java.nio.file.Files;
 import java.util.Collections;
 
 public class ConfigLoader {
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory()).disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     public static <T> T load(Extension extension, Class<?> extensionClass, Class<T> configClass) {
         File configFile = extension.dataFolder().resolve("config.yml").toFile();
 
@@ -74,9 +76,7 @@ public class ConfigLoader {
 
         // Load the config file
         try {
-            return new ObjectMapper(new YAMLFactory())
-                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-                .readValue(configFile, configClass);
+            return YAML_MAPPER.readValue(configFile, configClass);
         } catch (IOException e) {
             extension.logger().error("Failed to load config", e);
             return null;
@@ -32,5 +32,6 @@ public record CustomServersSection(
     boolean enabled,
     int max,
     @JsonProperty("storage-type") AbstractStorageManager.StorageType storageType,
-    MySQLConnectionSection mysql) {
+    MySQLConnectionSection mysql,
+    @JsonProperty("shutdown-timeout") int shutdownTimeout) {
 }
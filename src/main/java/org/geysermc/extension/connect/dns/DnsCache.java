@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.dns;
+
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.config.DnsSection;
+import org.geysermc.extension.connect.utils.Server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.security.Security;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Looks up Java servers ahead of time so their address is already in the JVM's address cache when
+ * Geyser connects to them.
+ * <p>
+ * Geyser is always given the server as the player entered it, as the host also goes in the Java
+ * handshake where proxies use it for forced hosts. The connection does its own SRV lookup, so we only
+ * look up the SRV record to know which host to resolve, and the address is resolved through the system
+ * resolver as that fills the JVM's cache the connection reads. That cache only keeps addresses for
+ * {@code networkaddress.cache.ttl} seconds, so entries never outlive it, and the TTLs are our own
+ * rather than the TTLs of the DNS records. Popular global servers are looked up again as they expire.
+ */
+public class DnsCache {
+    public static final int DEFAULT_POSITIVE_TTL = 300;
+    public static final int DEFAULT_NEGATIVE_TTL = 30;
+
+    private static final int MAX_ENTRIES = 10000;
+    private static final long REFRESH_INTERVAL_MILLIS = 5000;
+    private static final int DEFAULT_JVM_CACHE_TTL = 30;
+    private static final int POPULAR_HITS = 2;
+
+    private final boolean enabled;
+    private final DnsResolver resolver;
+    private final long positiveTtlMillis;
+    private final long negativeTtlMillis;
+    private final ExecutorService executor;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> inflight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public DnsCache(DnsSection section, DnsResolver resolver, ScheduledExecutorService scheduler, Predicate<String> popular) {
+        // If the JVM doesn't cache addresses there is nothing to warm
+        this.enabled = section != null && section.enabled() && jvmCacheTtl() != 0;
+        this.resolver = resolver;
+        // Nothing is gained by keeping an address for longer than the JVM does
+        long positiveTtl = section != null && section.positiveTtl() > 0 ? section.positiveTtl() : DEFAULT_POSITIVE_TTL;
+        long jvmTtl = jvmCacheTtl();
+        this.positiveTtlMillis = TimeUnit.SECONDS.toMillis(jvmTtl < 0 ? positiveTtl : Math.min(positiveTtl, jvmTtl));
+        this.negativeTtlMillis = TimeUnit.SECONDS.toMillis(section != null && section.negativeTtl() > 0 ? section.negativeTtl() : DEFAULT_NEGATIVE_TTL);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "GeyserConnect DNS #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (enabled && section.refreshPopular()) {
+            scheduler.scheduleAtFixedRate(() -> refreshPopular(popular), REFRESH_INTERVAL_MILLIS, REFRESH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a player being sent to a Java server, and look it up for next time if it wasn't ready
+     *
+     * @param server The server they are being sent to
+     * @return If its address was ready
+     */
+    public boolean onHandOff(Server server) {
+        String host = normalise(server.address());
+        if (isIpLiteral(host)) {
+            return true;
+        }
+
+        Entry entry = entries.get(host);
+        if (entry != null && !entry.negative() && !entry.expired()) {
+            hits.increment();
+            entry.hits.increment();
+            return true;
+        }
+
+        misses.increment();
+        if (entry == null || entry.expired()) {
+            // The connection is resolving it right now and the JVM shares the address lookup with it
+            query(host);
+        }
+        // A lookup that just failed isn't tried again until its negative entry expires
+        return false;
+    }
+
+    /**
+     * Check if looking a host up would tell us anything new. It wouldn't for an IP, a host being looked up,
+     * or one with an unexpired entry, including a failed lookup that shouldn't be retried yet
+     *
+     * @param host The lower case host to check
+     * @return If a lookup is worth starting
+     */
+    public boolean needsLookup(String host) {
+        if (isIpLiteral(host) || inflight.containsKey(host)) {
+            return false;
+        }
+
+        Entry entry = entries.get(host);
+        return entry == null || entry.expired();
+    }
+
+    /**
+     * Get the cached lookup for a host, starting a lookup if it isn't cached or has expired
+     *
+     * @param host The lower case host to look up
+     * @return The cache entry for the host
+     */
+    public CompletableFuture<Entry> lookup(String host) {
+        Entry entry = entries.get(host);
+        if (entry != null && !entry.expired()) {
+            return CompletableFuture.completedFuture(entry);
+        }
+
+        return query(host);
+    }
+
+    private CompletableFuture<Entry> query(String host) {
+        CompletableFuture<Entry> existing = inflight.get(host);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        existing = inflight.putIfAbsent(host, future);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> {
+                Entry entry = null;
+                try {
+                    entry = doLookup(host);
+
+                    if (entries.size() >= MAX_ENTRIES) {
+                        entries.values().removeIf(Entry::expired);
+                        if (entries.size() >= MAX_ENTRIES) {
+                            entries.clear();
+                        }
+                    }
+
+                    // Keep how popular the host is across refreshes
+                    Entry previous = entries.put(host, entry);
+                    if (previous != null) {
+                        entry.hits.add(previous.hits.sum());
+                    }
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    GeyserConnect.instance().logger().debug("DNS lookup failed for " + host + ": " + e);
+                } finally {
+                    // Whatever happened, nobody may be left waiting on this lookup
+                    inflight.remove(host, future);
+                    future.complete(entry != null ? entry : negativeEntry());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // We are shutting down
+            inflight.remove(host, future);
+            future.complete(negativeEntry());
+        }
+
+        return future;
+    }
+
+    private Entry negativeEntry() {
+        return new Entry(null, null, System.currentTimeMillis() + negativeTtlMillis);
+    }
+
+    private Entry doLookup(String host) {
+        try {
+            DnsResolver.SrvRecord srv = resolver.lookupSrv(host);
+
+            // Look up the address the connection will use so it is in the JVM's address cache
+            InetAddress address = resolver.lookupAddress(srv != null ? srv.host() : host);
+
+            // The JVM's entry starts now, so ours can't outlive it
+            return new Entry(srv, address, System.currentTimeMillis() + positiveTtlMillis);
+        } catch (IOException e) {
+            failures.increment();
+            GeyserConnect.instance().logger().debug("DNS lookup failed for " + host + ": " + e.getMessage());
+            return negativeEntry();
+        }
+    }
+
+    private void refreshPopular(Predicate<String> popular) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Entry> cached : entries.entrySet()) {
+            Entry entry = cached.getValue();
+            if (entry.negative() || entry.hits.sum() < POPULAR_HITS) {
+                continue;
+            }
+
+            // Looking up an address the JVM still has does nothing, so wait for it to expire
+            if (entry.expiresAt <= now && popular.test(cached.getKey())) {
+                refreshes.increment();
+                query(cached.getKey());
+            }
+        }
+    }
+
+    /**
+     * Get the key used for a host in the cache
+     *
+     * @param host The host as entered
+     * @return The lower case host
+     */
+    public static String normalise(String host) {
+        return host.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return How many seconds the JVM keeps resolved addresses, -1 for forever
+     */
+    private static long jvmCacheTtl() {
+        String ttl = Security.getProperty("networkaddress.cache.ttl");
+        if (ttl == null) {
+            ttl = System.getProperty("sun.net.inetaddr.ttl");
+        }
+
+        if (ttl != null) {
+            try {
+                return Long.parseLong(ttl.strip());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return DEFAULT_JVM_CACHE_TTL;
+    }
+
+    private static boolean isIpLiteral(String host) {
+        if (host.indexOf(':') != -1) {
+            return true;
+        }
+
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return !host.isEmpty();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public long refreshes() {
+        return refreshes.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The fraction of lookups answered from the cache
+     */
+    public double hitRate() {
+        long total = hits.sum() + misses.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A cached lookup
+     */
+    public static class Entry {
+        private final DnsResolver.SrvRecord srv;
+        private final InetAddress address;
+        private final long expiresAt;
+        private final LongAdder hits = new LongAdder();
+
+        private Entry(DnsResolver.SrvRecord srv, InetAddress address, long expiresAt) {
+            this.srv = srv;
+            this.address = address;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean expired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        /**
+         * @return If the lookup failed
+         */
+        public boolean negative() {
+            return address == null;
+        }
+    }
+}
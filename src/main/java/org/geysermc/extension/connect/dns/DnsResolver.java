@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.dns;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Looks up the DNS records needed to connect to a Java server
+ */
+public interface DnsResolver {
+    /**
+     * Look up the {@code _minecraft._tcp} SRV record for a host
+     *
+     * @param host The host to look up
+     * @return The record, or null if the host doesn't have one
+     * @throws IOException If the lookup failed
+     */
+    SrvRecord lookupSrv(String host) throws IOException;
+
+    /**
+     * Look up the address of a host so it is in the JVM's address cache
+     *
+     * @param host The host to look up
+     * @return The address of the host
+     * @throws IOException If the host couldn't be resolved
+     */
+    InetAddress lookupAddress(String host) throws IOException;
+
+    /**
+     * The target of an SRV record
+     *
+     * @param host The host the record points to
+     * @param port The port the record points to
+     */
+    record SrvRecord(String host, int port) {
+    }
+}
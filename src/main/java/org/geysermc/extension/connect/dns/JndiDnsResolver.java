@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.dns;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Hashtable;
+
+/**
+ * Resolves SRV records using the JDK's JNDI DNS provider, optionally against a specific DNS server,
+ * and addresses using the system resolver
+ */
+public class JndiDnsResolver implements DnsResolver {
+    private final String server;
+
+    /**
+     * @param server The DNS server to query for SRV records as {@code host[:port]}, or null to use the system resolver
+     */
+    public JndiDnsResolver(String server) {
+        this.server = server == null || server.isBlank() ? null : server.strip();
+    }
+
+    private DirContext context() throws NamingException {
+        Hashtable<String, String> environment = new Hashtable<>();
+        environment.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+        environment.put("java.naming.provider.url", server == null ? "dns:" : "dns://" + server);
+        environment.put("com.sun.jndi.dns.timeout.initial", "1000");
+        environment.put("com.sun.jndi.dns.timeout.retries", "2");
+        return new InitialDirContext(environment);
+    }
+
+    @Override
+    public SrvRecord lookupSrv(String host) throws IOException {
+        try {
+            DirContext context = context();
+            try {
+                Attribute records = context.getAttributes("_minecraft._tcp." + host, new String[] {"SRV"}).get("SRV");
+                if (records == null || records.size() == 0) {
+                    return null;
+                }
+
+                // priority weight port target
+                String[] parts = records.get(0).toString().split(" ");
+                if (parts.length < 4) {
+                    return null;
+                }
+
+                String target = parts[3].endsWith(".") ? parts[3].substring(0, parts[3].length() - 1) : parts[3];
+                return new SrvRecord(target, Integer.parseInt(parts[2]));
+            } finally {
+                context.close();
+            }
+        } catch (NameNotFoundException e) {
+            return null;
+        } catch (NamingException | NumberFormatException e) {
+            throw new IOException("Failed to look up SRV record for " + host, e);
+        }
+    }
+
+    @Override
+    public InetAddress lookupAddress(String host) throws IOException {
+        // Always use the system resolver, the connection reads the address from the JVM cache it fills
+        return InetAddress.getByName(host);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.dns;
+
+import org.geysermc.api.connection.Connection;
+import org.geysermc.extension.connect.admission.TokenBucket;
+import org.geysermc.extension.connect.utils.Server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Starts resolving the servers a player is likely to pick before they pick one.
+ * <p>
+ * When a server list is opened we look up the player's last server and the most popular servers on
+ * the page, and when a virtual host is parsed we look up its target, so the lookup in
+ * {@link DnsCache} is already done by the time they connect. Lookups are limited by a budget.
+ */
+public class SpeculativeWarmup {
+    public static final int DEFAULT_BUDGET = 600;
+
+    private static final int POPULAR_PER_PAGE = 3;
+    private static final int MAX_TRACKED = 10000;
+    private static final long SPECULATION_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final DnsCache dnsCache;
+    private final boolean enabled;
+    private final TokenBucket budget;
+
+    private final Map<String, Server> lastServers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> popularity = new ConcurrentHashMap<>();
+    private final Map<String, Long> speculated = new ConcurrentHashMap<>();
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder handOffs = new LongAdder();
+    private final LongAdder speculationHits = new LongAdder();
+
+    /**
+     * @param dnsCache The cache to resolve into
+     * @param enabled If speculation should be done
+     * @param budgetPerMinute How many speculative lookups can be started each minute
+     */
+    public SpeculativeWarmup(DnsCache dnsCache, boolean enabled, int budgetPerMinute) {
+        this.dnsCache = dnsCache;
+        this.enabled = enabled && dnsCache.enabled();
+
+        int perMinute = budgetPerMinute > 0 ? budgetPerMinute : DEFAULT_BUDGET;
+        this.budget = new TokenBucket(perMinute / 60D, Math.max(1, perMinute / 6D));
+    }
+
+    /**
+     * A player has opened a list of servers
+     *
+     * @param session The player
+     * @param servers The servers they can see
+     */
+    public void onMenuOpen(Connection session, List<Server> servers) {
+        if (!enabled) {
+            return;
+        }
+
+        Server last = lastServers.get(session.xuid());
+        if (last != null) {
+            speculate(last);
+        }
+
+        // Pick the servers on the page other players have used the most
+        List<Server> candidates = new ArrayList<>();
+        for (Server server : servers) {
+            if (!server.bedrock() && popularity(server) > 0) {
+                candidates.add(server);
+            }
+        }
+
+        candidates.sort(Comparator.comparingLong(this::popularity).reversed());
+        for (int i = 0; i < Math.min(POPULAR_PER_PAGE, candidates.size()); i++) {
+            speculate(candidates.get(i));
+        }
+    }
+
+    /**
+     * A virtual host has been parsed, before the player has been let in
+     *
+     * @param server The target of the virtual host
+     */
+    public void onVirtualHost(Server server) {
+        if (enabled) {
+            speculate(server);
+        }
+    }
+
+    private void speculate(Server server) {
+        if (server.bedrock()) {
+            return;
+        }
+
+        String host = DnsCache.normalise(server.address());
+        if (!dnsCache.needsLookup(host)) {
+            return;
+        }
+
+        if (!budget.tryAcquire()) {
+            overBudget.increment();
+            return;
+        }
+
+        if (speculated.size() >= MAX_TRACKED) {
+            speculated.clear();
+        }
+
+        started.increment();
+        speculated.put(host, System.currentTimeMillis());
+        dnsCache.lookup(host);
+    }
+
+    /**
+     * A player is being sent to a server, remember it and check if we guessed it
+     *
+     * @param session The player
+     * @param server The server they are being sent to
+     */
+    public void onHandOff(Connection session, Server server) {
+        if (!enabled || server.bedrock()) {
+            return;
+        }
+
+        if (lastServers.size() >= MAX_TRACKED) {
+            lastServers.clear();
+        }
+        lastServers.put(session.xuid(), server);
+
+        String host = DnsCache.normalise(server.address());
+        if (popularity.size() < MAX_TRACKED || popularity.containsKey(host)) {
+            popularity.computeIfAbsent(host, key -> new LongAdder()).increment();
+        }
+
+        handOffs.increment();
+        Long speculatedAt = speculated.remove(host);
+        if (speculatedAt != null && System.currentTimeMillis() - speculatedAt < SPECULATION_WINDOW_MILLIS) {
+            speculationHits.increment();
+        }
+    }
+
+    private long popularity(Server server) {
+        LongAdder count = popularity.get(DnsCache.normalise(server.address()));
+        return count == null ? 0 : count.sum();
+    }
+
+    public long started() {
+        return started.sum();
+    }
+
+    public long overBudget() {
+        return overBudget.sum();
+    }
+
+    public long handOffs() {
+        return handOffs.sum();
+    }
+
+    public long speculationHits() {
+        return speculationHits.sum();
+    }
+
+    /**
+     * @return The fraction of Java hand offs to a server we had speculatively resolved
+     */
+    public double hitRate() {
+        long total = handOffs.sum();
+        return total == 0 ? 0 : (double) speculationHits.sum() / total;
+    }
+}
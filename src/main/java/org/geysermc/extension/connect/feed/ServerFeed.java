@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.feed;
+
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.config.ServerFeedSection;
+import org.geysermc.extension.connect.utils.Server;
+import org.geysermc.extension.connect.utils.ServerDirectory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Polls a remote or local list of global servers and applies any changes to the server directory.
+ * <p>
+ * HTTP sources are fetched with {@code If-None-Match} and {@code If-Modified-Since} so an unchanged
+ * list costs a 304, and file sources are only read when their size or modified time changes.
+ * The directory is only rebuilt if an entry was actually added, removed or changed.
+ */
+public class ServerFeed {
+    public static final int DEFAULT_POLL_INTERVAL = 10;
+    public static final int DEFAULT_TIMEOUT = 5;
+
+    private final GeyserConnect geyserConnect;
+    private final String source;
+    private final boolean yaml;
+    private final URI uri;
+    private final Path file;
+    private final HttpClient httpClient;
+    private final int pollInterval;
+    private final Duration timeout;
+    private final ScheduledExecutorService executor;
+
+    // Only touched on the feed thread
+    private String etag;
+    private String lastModified;
+    private long fileSize = -1;
+    private long fileModified = -1;
+    private Map<String, Server> current = Map.of();
+    private boolean failing;
+    private int skipped;
+
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public ServerFeed(GeyserConnect geyserConnect, ServerFeedSection section) {
+        this.geyserConnect = geyserConnect;
+        this.source = section.source().trim();
+        this.pollInterval = section.pollInterval() > 0 ? section.pollInterval() : DEFAULT_POLL_INTERVAL;
+        this.timeout = Duration.ofSeconds(section.timeout() > 0 ? section.timeout() : DEFAULT_TIMEOUT);
+
+        String lowerSource = source.toLowerCase(Locale.ROOT);
+        this.yaml = lowerSource.endsWith(".yml") || lowerSource.endsWith(".yaml");
+
+        if (lowerSource.startsWith("http://") || lowerSource.startsWith("https://")) {
+            this.uri = URI.create(source);
+            this.file = null;
+            this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        } else {
+            this.uri = null;
+            this.file = geyserConnect.dataFolder().resolve(source);
+            this.httpClient = null;
+        }
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GeyserConnect Server Feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::poll, 0, pollInterval, TimeUnit.SECONDS);
+        geyserConnect.logger().info("Checking " + source + " for global servers every " + pollInterval + " seconds");
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void poll() {
+        polls.increment();
+        try {
+            byte[] body = uri != null ? fetchHttp() : fetchFile();
+            if (body == null) {
+                notModified.increment();
+            } else {
+                List<Server> servers = new ArrayList<>();
+                int skipped = ServerDirectory.readServers(body, yaml, servers);
+
+                // Only say so when it changes so a feed with a bad entry doesn't log it on every poll
+                if (skipped != this.skipped) {
+                    this.skipped = skipped;
+                    if (skipped > 0) {
+                        geyserConnect.logger().warning("Skipped " + skipped + " servers without a category or address in server feed " + source);
+                    }
+                }
+
+                apply(servers);
+            }
+
+            if (failing) {
+                failing = false;
+                geyserConnect.logger().info("Server feed " + source + " is working again");
+            }
+        } catch (Exception e) {
+            failures.increment();
+
+            // Only log the first failure so a broken feed doesn't flood the console
+            if (!failing) {
+                failing = true;
+                geyserConnect.logger().warning("Failed to check server feed " + source + ": " + e.getMessage());
+            } else {
+                geyserConnect.logger().debug("Failed to check server feed " + source + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The new list, or null if it hasn't changed since the last request
+     */
+    private byte[] fetchHttp() throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+            .timeout(timeout)
+            .header("Accept", yaml ? "application/yaml" : "application/json")
+            .GET();
+
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+
+        HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 304) {
+            return null;
+        }
+
+        if (response.statusCode() != 200) {
+            throw new IOException("Unexpected response " + response.statusCode());
+        }
+
+        etag = response.headers().firstValue("ETag").orElse(null);
+        lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        return response.body();
+    }
+
+    /**
+     * @return The new list, or null if the file hasn't changed since it was last read
+     */
+    private byte[] fetchFile() throws IOException {
+        if (!Files.exists(file)) {
+            throw new IOException("File not found: " + file);
+        }
+
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        if (size == fileSize && modified == fileModified) {
+            return null;
+        }
+
+        byte[] body = Files.readAllBytes(file);
+        fileSize = size;
+        fileModified = modified;
+        return body;
+    }
+
+    private void apply(List<Server> servers) {
+        Map<String, Server> updated = new LinkedHashMap<>();
+        for (Server server : servers) {
+            updated.put(key(server), server);
+        }
+
+        int added = 0;
+        int changed = 0;
+        for (Map.Entry<String, Server> entry : updated.entrySet()) {
+            Server old = current.get(entry.getKey());
+            if (old == null) {
+                added++;
+            } else if (!old.equals(entry.getValue())) {
+                changed++;
+            }
+        }
+
+        int removed = 0;
+        for (String key : current.keySet()) {
+            if (!updated.containsKey(key)) {
+                removed++;
+            }
+        }
+
+        if (added == 0 && changed == 0 && removed == 0) {
+            return;
+        }
+
+        current = updated;
+        updates.increment();
+
+        List<Server> feedServers = new ArrayList<>(updated.values());
+        geyserConnect.reloadManager().updateServerDirectory(directory -> directory.withFeed(feedServers)).join();
+        geyserConnect.logger().info("Server feed updated: +" + added + " -" + removed + " ~" + changed + " (" + feedServers.size() + " servers)");
+    }
+
+    private static String key(Server server) {
+        return server.category() + "/" + server.address().toLowerCase(Locale.ROOT) + ":" + server.port();
+    }
+
+    public long polls() {
+        return polls.sum();
+    }
+
+    public long notModified() {
+        return notModified.sum();
+    }
+
+    public long updates() {
+        return updates.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * @author Koukunn
+ */
+
+package org.geysermc.extension.connect.language;
+
+import org.geysermc.extension.connect.GeyserConnect;
+
+import java.util.Map;
+
+/**
+ * A language compiled into an array of templates, indexed by the key slots shared between all
+ * languages. Keys missing from the language have already been filled in from its fallbacks.
+ */
+public final class Language {
+    private final String name;
+    private final Map<String, Integer> keys;
+    private final MessageTemplate[] templates;
+
+    Language(String name, Map<String, Integer> keys, MessageTemplate[] templates) {
+        this.name = name;
+        this.keys = keys;
+        this.templates = templates;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Get the template for a key
+     *
+     * @param key The language key
+     * @return The template, or null if no language has the key
+     */
+    public MessageTemplate template(String key) {
+        Integer slot = keys.get(key);
+        return slot == null ? null : templates[slot];
+    }
+
+    public String get(String key) {
+        MessageTemplate template = template(key);
+        return template == null ? key : template.text();
+    }
+
+    public String getMessage(String key, Object... args) {
+        MessageTemplate template = template(key);
+        if (template == null) {
+            return key;
+        }
+
+        if (args.length == 0) {
+            return template.text();
+        }
+
+        try {
+            return template.format(args);
+        } catch (Exception e) {
+            GeyserConnect.instance().logger().warning("Failed to format message: " + key + ", " + e.getMessage());
+            return template.pattern();
+        }
+    }
+}
@@ -11,23 +11,59 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 public class LanguageManager {
     private static final String LANG_FOLDER = "lang";
     private static final String DEFAULT_LANG = "en_US";
+    private static final int MAX_RESOLVED_CODES = 256;
     
     private final Path langFolder;
     private final Map<String, Map<String, String>> loadedLanguages = new HashMap<>();
-    private Map<String, String> currentLanguage;
+    private final Map<String, Language> resolvedCodes = new ConcurrentHashMap<>();
+    private volatile Map<String, Language> compiledLanguages = Map.of();
+    private volatile Language currentLanguage;
     
     public LanguageManager() {
-        this.langFolder = Paths.get(GeyserConnect.instance().dataFolder().toAbsolutePath().toString(), LANG_FOLDER);
+        this.langFolder = langFolder();
         initializeLangFolder();
     }
     
+    public static Path langFolder() {
+        return Paths.get(GeyserConnect.instance().dataFolder().toAbsolutePath().toString(), LANG_FOLDER);
+    }
+    
+    /**
+     * Describe the current state of the language files, so a reload can tell if they changed
+     *
+     * @return The name, size and modified time of every language file
+     */
+    public static String stamp() {
+        Path folder = langFolder();
+        if (!Files.isDirectory(folder)) {
+            return "";
+        }
+        
+        StringBuilder stamp = new StringBuilder();
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(".lang")).sorted().toList()) {
+                stamp.append(file.getFileName()).append(':').append(Files.size(file)).append(':').append(Files.getLastModifiedTime(file).toMillis()).append(';');
+            }
+        } catch (IOException e) {
+            // Force a rebuild if we can't tell
+            return String.valueOf(System.nanoTime());
+        }
+        return stamp.toString();
+    }
+    
     private void initializeLangFolder() {
         try {
             if (!Files.exists(langFolder)) {
@@ -42,9 +78,21 @@ public class LanguageManager {
                 GeyserConnect.instance().logger().info("Created default language file: " + DEFAULT_LANG + ".lang");
             }
             
-            // Load default language
-            loadLanguage(DEFAULT_LANG);
-            this.currentLanguage = loadedLanguages.get(DEFAULT_LANG);
+            // Load every language so players can be shown their own
+            try (Stream<Path> files = Files.list(langFolder)) {
+                files.map(file -> file.getFileName().toString())
+                    .filter(fileName -> fileName.endsWith(".lang"))
+                    .forEach(fileName -> loadLanguage(fileName.substring(0, fileName.length() - ".lang".length())));
+            }
+            
+            // Fill in any keys missing from an older default language file
+            Map<String, String> defaultLanguage = loadedLanguages.computeIfAbsent(DEFAULT_LANG, name -> new HashMap<>());
+            Properties defaults = defaultProperties();
+            for (String key : defaults.stringPropertyNames()) {
+                defaultLanguage.putIfAbsent(key, defaults.getProperty(key));
+            }
+            
+            compile(DEFAULT_LANG);
             
         } catch (IOException e) {
             GeyserConnect.instance().logger().severe("Failed to initialize language folder", e);
@@ -52,6 +100,14 @@ public class LanguageManager {
     }
     
     private void createDefaultLanguageFile(Path filePath) throws IOException {
+        Properties props = defaultProperties();
+        
+        try (OutputStream out = Files.newOutputStream(filePath)) {
+            props.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), "GeyserConnect Language File - English (US)");
+        }
+    }
+    
+    private Properties defaultProperties() {
         Properties props = new Properties();
         
         // UI Messages
@@ -73,6 +129,17 @@ public class LanguageManager {
         props.setProperty("ui.button.delete_server", "Delete server");
         props.setProperty("ui.button.add_server", "Add server");
         props.setProperty("ui.button.edit_servers", "Edit servers");
+        props.setProperty("ui.button.previous_page", "Previous page");
+        props.setProperty("ui.button.next_page", "Next page");
+        props.setProperty("ui.content.page", "Page %s of %s");
+        
+        // Search
+        props.setProperty("ui.button.search_servers", "Search servers");
+        props.setProperty("ui.button.search_again", "Search again");
+        props.setProperty("ui.title.search_servers", "Search Servers");
+        props.setProperty("ui.title.search_results", "Search Results");
+        props.setProperty("ui.label.search", "Server name or address");
+        props.setProperty("ui.content.no_results", "No servers found for '%s'");
         
         // Add/Edit server forms
         props.setProperty("ui.title.add_server", "Add Server");
@@ -82,6 +149,9 @@ public class LanguageManager {
         props.setProperty("ui.label.port", "Port");
         props.setProperty("ui.label.online_mode", "Online mode");
         props.setProperty("ui.label.bedrock_server", "Bedrock/Geyser server");
+        props.setProperty("ui.content.invalid_server", "That isn't a valid server address and port");
+        props.setProperty("ui.content.server_limit", "You can't have more than %s custom servers");
+        props.setProperty("ui.content.too_fast", "You are changing your servers too quickly, please wait a moment");
         
         // Server options
         props.setProperty("ui.title.server_options", "Server Options");
@@ -90,18 +160,20 @@ public class LanguageManager {
         props.setProperty("ui.title.delete_server", "Delete Server");
         props.setProperty("ui.content.delete_server", "Are you sure you want to delete %s?");
         
+        // Join queue
+        props.setProperty("ui.title.queue", "Queue");
+        props.setProperty("ui.content.queue", "The server is busy, you are number %s in the queue. Please wait...");
+        
         // Notice
         props.setProperty("ui.title.notice", "Notice");
         
-        try (OutputStream out = Files.newOutputStream(filePath)) {
-            props.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), "GeyserConnect Language File - English (US)");
-        }
+        return props;
     }
     
     public void loadLanguageFromConfig(String languageName) {
         if (languageName == null || languageName.trim().isEmpty()) {
             // Use default language
-            this.currentLanguage = loadedLanguages.get(DEFAULT_LANG);
+            compile(DEFAULT_LANG);
             return;
         }
         
@@ -110,14 +182,13 @@ public class LanguageManager {
             loadLanguage(languageName);
         }
         
-        Map<String, String> language = loadedLanguages.get(languageName);
-        if (language != null) {
-            this.currentLanguage = language;
+        if (loadedLanguages.containsKey(languageName)) {
+            compile(languageName);
             GeyserConnect.instance().logger().info("Loaded language: " + languageName);
         } else {
             // Fallback to default if language not found
             GeyserConnect.instance().logger().warning("Language not found: " + languageName + ", using default: " + DEFAULT_LANG);
-            this.currentLanguage = loadedLanguages.get(DEFAULT_LANG);
+            compile(DEFAULT_LANG);
         }
     }
     
@@ -148,27 +219,117 @@ public class LanguageManager {
         }
     }
     
-    public String getMessage(String key, Object... args) {
-        String message = currentLanguage.getOrDefault(key, key);
-        
-        // If not found in current language, try default
-        if (message.equals(key) && currentLanguage != loadedLanguages.get(DEFAULT_LANG)) {
-            message = loadedLanguages.get(DEFAULT_LANG).getOrDefault(key, key);
+    /**
+     * Compile every loaded language into templates, filling missing keys from
+     * the same language in another region, then the server language, then en_US
+     *
+     * @param serverLanguage The language from the config
+     */
+    private void compile(String serverLanguage) {
+        // Give every key a slot shared by all languages
+        Map<String, Integer> keys = new HashMap<>();
+        for (String key : new TreeSet<>(loadedLanguages.values().stream().flatMap(language -> language.keySet().stream()).toList())) {
+            keys.put(key, keys.size());
         }
         
-        // Format the message with arguments if provided
-        if (args.length > 0) {
-            try {
-                message = String.format(message, args);
-            } catch (Exception e) {
-                GeyserConnect.instance().logger().warning("Failed to format message: " + key + ", " + e.getMessage());
+        Map<String, Language> compiled = new HashMap<>();
+        for (String languageName : loadedLanguages.keySet()) {
+            List<Map<String, String>> chain = fallbackChain(languageName, serverLanguage);
+            
+            MessageTemplate[] templates = new MessageTemplate[keys.size()];
+            for (Map.Entry<String, Integer> key : keys.entrySet()) {
+                String message = key.getKey();
+                for (Map<String, String> language : chain) {
+                    String value = language.get(key.getKey());
+                    if (value != null) {
+                        message = value;
+                        break;
+                    }
+                }
+                templates[key.getValue()] = MessageTemplate.compile(message);
             }
+            
+            compiled.put(languageName.toLowerCase(Locale.ROOT), new Language(languageName, keys, templates));
+        }
+        
+        this.compiledLanguages = compiled;
+        this.currentLanguage = compiled.get(serverLanguage.toLowerCase(Locale.ROOT));
+        this.resolvedCodes.clear();
+    }
+    
+    private List<Map<String, String>> fallbackChain(String languageName, String serverLanguage) {
+        List<Map<String, String>> chain = new ArrayList<>();
+        chain.add(loadedLanguages.get(languageName));
+        
+        // The same language in another region, eg pt_PT for pt_BR
+        String prefix = baseLanguage(languageName);
+        loadedLanguages.entrySet().stream()
+            .filter(entry -> !entry.getKey().equals(languageName) && baseLanguage(entry.getKey()).equals(prefix))
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(entry -> chain.add(entry.getValue()));
+        
+        chain.add(loadedLanguages.get(serverLanguage));
+        chain.add(loadedLanguages.get(DEFAULT_LANG));
+        chain.removeIf(language -> language == null);
+        return chain;
+    }
+    
+    private static String baseLanguage(String languageName) {
+        int separator = languageName.indexOf('_');
+        return (separator == -1 ? languageName : languageName.substring(0, separator)).toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Get the language for a player's Bedrock language code, eg en_GB
+     *
+     * @param languageCode The language code sent by the client
+     * @return The exact language, the same language from another region, or the server language
+     */
+    public Language language(String languageCode) {
+        if (languageCode == null || languageCode.isEmpty()) {
+            return currentLanguage;
         }
         
-        return message;
+        Language language = resolvedCodes.get(languageCode);
+        if (language != null) {
+            return language;
+        }
+        
+        language = resolve(languageCode);
+        
+        // The code comes from the client so don't let it grow forever
+        if (resolvedCodes.size() < MAX_RESOLVED_CODES) {
+            resolvedCodes.put(languageCode, language);
+        }
+        return language;
+    }
+    
+    private Language resolve(String languageCode) {
+        Map<String, Language> compiled = compiledLanguages;
+        Language language = compiled.get(languageCode.replace('-', '_').toLowerCase(Locale.ROOT));
+        if (language != null) {
+            return language;
+        }
+        
+        String prefix = baseLanguage(languageCode.replace('-', '_'));
+        return compiled.values().stream()
+            .filter(candidate -> baseLanguage(candidate.name()).equals(prefix))
+            .min((first, second) -> first.name().compareTo(second.name()))
+            .orElse(currentLanguage);
+    }
+    
+    /**
+     * @return The language set in the config
+     */
+    public Language language() {
+        return currentLanguage;
+    }
+    
+    public String getMessage(String key, Object... args) {
+        return currentLanguage.getMessage(key, args);
     }
     
     public String get(String key) {
-        return getMessage(key);
+        return currentLanguage.get(key);
     }
 }
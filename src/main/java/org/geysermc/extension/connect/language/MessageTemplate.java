@@ -0,0 +1,170 @@
+/*
+ * @author Koukunn
+ */
+
+package org.geysermc.extension.connect.language;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A language string with its placeholders parsed once at load.
+ * <p>
+ * Supports {@code %s}, {@code %1$s}, {@code %n} and {@code %%}. Any other format specifier
+ * falls back to {@link String#format}. Strings without placeholders are rendered up front.
+ */
+public final class MessageTemplate {
+    private static final int LITERAL = -1;
+
+    private final String pattern;
+    private final String text;
+    private final String[] literals;
+    private final int[] arguments;
+    private final int argumentCount;
+    private final boolean needsFormatter;
+
+    private MessageTemplate(String pattern, String text, String[] literals, int[] arguments, int argumentCount, boolean needsFormatter) {
+        this.pattern = pattern;
+        this.text = text;
+        this.literals = literals;
+        this.arguments = arguments;
+        this.argumentCount = argumentCount;
+        this.needsFormatter = needsFormatter;
+    }
+
+    /**
+     * Parse a message into a template
+     *
+     * @param pattern The message from the language file
+     * @return The compiled template
+     */
+    public static MessageTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int nextArgument = 0;
+        int argumentCount = 0;
+
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+
+            if (i >= pattern.length()) {
+                return formatted(pattern);
+            }
+
+            char next = pattern.charAt(i);
+            if (next == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+
+            if (next == 'n') {
+                literal.append(System.lineSeparator());
+                i++;
+                continue;
+            }
+
+            // Either %s or an explicit index like %2$s
+            int argument;
+            int end = i;
+            while (end < pattern.length() && Character.isDigit(pattern.charAt(end))) {
+                end++;
+            }
+
+            if (end > i && end + 1 < pattern.length() && pattern.charAt(end) == '$' && pattern.charAt(end + 1) == 's') {
+                argument = Integer.parseInt(pattern.substring(i, end)) - 1;
+                i = end + 2;
+            } else if (next == 's') {
+                argument = nextArgument++;
+                i++;
+            } else {
+                return formatted(pattern);
+            }
+
+            if (argument < 0) {
+                return formatted(pattern);
+            }
+
+            if (!literal.isEmpty()) {
+                literals.add(literal.toString());
+                arguments.add(LITERAL);
+                literal.setLength(0);
+            }
+
+            literals.add(null);
+            arguments.add(argument);
+            argumentCount = Math.max(argumentCount, argument + 1);
+        }
+
+        if (!literal.isEmpty()) {
+            literals.add(literal.toString());
+            arguments.add(LITERAL);
+        }
+
+        if (argumentCount == 0) {
+            // Nothing to fill in so render it now
+            String text = String.join("", literals);
+            return new MessageTemplate(pattern, text, new String[] {text}, new int[] {LITERAL}, 0, false);
+        }
+
+        return new MessageTemplate(pattern, pattern, literals.toArray(new String[0]),
+            arguments.stream().mapToInt(Integer::intValue).toArray(), argumentCount, false);
+    }
+
+    private static MessageTemplate formatted(String pattern) {
+        return new MessageTemplate(pattern, pattern, new String[0], new int[0], 0, true);
+    }
+
+    /**
+     * @return The rendered string if there is nothing to fill in, otherwise the raw pattern
+     */
+    public String text() {
+        return text;
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    public boolean isStatic() {
+        return argumentCount == 0 && !needsFormatter;
+    }
+
+    /**
+     * Fill in the placeholders
+     *
+     * @param args The values for the placeholders
+     * @return The rendered message
+     * @throws IllegalArgumentException If there are not enough values for the placeholders
+     */
+    public String format(Object... args) {
+        if (needsFormatter) {
+            return String.format(pattern, args);
+        }
+
+        if (argumentCount == 0) {
+            return text;
+        }
+
+        if (args.length < argumentCount) {
+            throw new IllegalArgumentException("Expected " + argumentCount + " arguments but got " + args.length);
+        }
+
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * argumentCount);
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] == LITERAL) {
+                builder.append(literals[i]);
+            } else {
+                builder.append(args[arguments[i]]);
+            }
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.lobby;
+
+import io.netty.channel.ChannelPipeline;
+import org.cloudburstmc.protocol.bedrock.packet.AnimatePacket;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ChunkRadiusUpdatedPacket;
+import org.cloudburstmc.protocol.bedrock.packet.LevelEventPacket;
+import org.cloudburstmc.protocol.bedrock.packet.LevelSoundEventPacket;
+import org.cloudburstmc.protocol.bedrock.packet.MoveEntityAbsolutePacket;
+import org.cloudburstmc.protocol.bedrock.packet.PlaySoundPacket;
+import org.cloudburstmc.protocol.bedrock.packet.SetEntityDataPacket;
+import org.cloudburstmc.protocol.bedrock.packet.SetEntityMotionPacket;
+import org.cloudburstmc.protocol.bedrock.packet.SetTimePacket;
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.config.LobbySection;
+import org.geysermc.extension.connect.utils.Utils;
+import org.geysermc.geyser.session.GeyserSession;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps players sitting in the menu as cheap as possible.
+ * <p>
+ * While a player is in the menu we keep their chunk radius at the minimum, drop world updates
+ * they can't see behind the forms and count what we send them.
+ */
+public class LobbyMode {
+    public static final int DEFAULT_CHUNK_RADIUS = 2;
+
+    /**
+     * Packets that only matter to a player in a world, not one looking at forms
+     */
+    private static final Set<Class<? extends BedrockPacket>> SUPPRESSED_PACKETS = Set.of(
+        AnimatePacket.class,
+        LevelEventPacket.class,
+        LevelSoundEventPacket.class,
+        MoveEntityAbsolutePacket.class,
+        PlaySoundPacket.class,
+        SetEntityDataPacket.class,
+        SetEntityMotionPacket.class,
+        SetTimePacket.class
+    );
+
+    private static final LongAdder sessions = new LongAdder();
+    private static final LongAdder totalPackets = new LongAdder();
+    private static final LongAdder totalBytes = new LongAdder();
+    private static final LongAdder totalSuppressed = new LongAdder();
+
+    public static boolean enabled() {
+        LobbySection lobby = GeyserConnect.instance().config().lobby();
+        return lobby != null && lobby.enabled();
+    }
+
+    public static int chunkRadius() {
+        int chunkRadius = GeyserConnect.instance().config().lobby().chunkRadius();
+        return chunkRadius > 0 ? chunkRadius : DEFAULT_CHUNK_RADIUS;
+    }
+
+    /**
+     * Start tracking a session that has joined the menu
+     *
+     * @param session The session to track
+     */
+    public static void start(GeyserSession session) {
+        if (!enabled()) {
+            return;
+        }
+
+        LobbyTrafficHandler.LobbyTraffic traffic = new LobbyTrafficHandler.LobbyTraffic();
+        ChannelPipeline pipeline = pipeline(session);
+        try {
+            pipeline.addFirst(LobbyTrafficHandler.BYTES_NAME, new LobbyTrafficHandler(traffic, true, Set.of()));
+            pipeline.addLast(LobbyTrafficHandler.PACKETS_NAME, new LobbyTrafficHandler(traffic, false, SUPPRESSED_PACKETS));
+        } catch (IllegalArgumentException e) {
+            GeyserConnect.instance().logger().debug("Lobby mode already started for " + Utils.displayName(session));
+        }
+    }
+
+    /**
+     * Stop tracking a session as it is leaving the menu and report what it cost
+     *
+     * @param session The session leaving the menu
+     */
+    public static void finish(GeyserSession session) {
+        ChannelPipeline pipeline = pipeline(session);
+        if (pipeline.get(LobbyTrafficHandler.PACKETS_NAME) instanceof LobbyTrafficHandler handler) {
+            LobbyTrafficHandler.LobbyTraffic traffic = handler.traffic();
+
+            pipeline.remove(LobbyTrafficHandler.PACKETS_NAME);
+            if (pipeline.get(LobbyTrafficHandler.BYTES_NAME) != null) {
+                pipeline.remove(LobbyTrafficHandler.BYTES_NAME);
+            }
+
+            sessions.increment();
+            totalPackets.add(traffic.packets());
+            totalBytes.add(traffic.bytes());
+            totalSuppressed.add(traffic.suppressed());
+
+            GeyserConnect.instance().logger().debug(Utils.displayName(session) + " spent " + traffic.durationMillis() + "ms in the menu and was sent "
+                + traffic.packets() + " packets (" + traffic.bytes() + " bytes), " + traffic.suppressed() + " packets suppressed");
+        }
+    }
+
+    /**
+     * Reply to a chunk radius request with the smallest radius we can get away with
+     *
+     * @param session The session asking
+     * @param requestedRadius The radius the client asked for
+     */
+    public static void sendChunkRadius(GeyserSession session, int requestedRadius) {
+        ChunkRadiusUpdatedPacket chunkRadiusUpdatedPacket = new ChunkRadiusUpdatedPacket();
+        chunkRadiusUpdatedPacket.setRadius(Math.min(requestedRadius, chunkRadius()));
+        session.sendUpstreamPacket(chunkRadiusUpdatedPacket);
+    }
+
+    private static ChannelPipeline pipeline(GeyserSession session) {
+        return session.getUpstream().getSession().getPeer().getChannel().pipeline();
+    }
+
+    public static long sessions() {
+        return sessions.sum();
+    }
+
+    public static long totalPackets() {
+        return totalPackets.sum();
+    }
+
+    public static long totalBytes() {
+        return totalBytes.sum();
+    }
+
+    public static long totalSuppressed() {
+        return totalSuppressed.sum();
+    }
+}
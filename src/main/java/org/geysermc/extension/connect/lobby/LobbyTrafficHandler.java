@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.lobby;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import org.cloudburstmc.protocol.bedrock.netty.BedrockBatchWrapper;
+import org.cloudburstmc.protocol.bedrock.netty.BedrockPacketWrapper;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the traffic sent to a player in the menu and drops packets that do nothing for a player who only sees forms.
+ * <p>
+ * One instance sits at the tail of the pipeline and sees the packets before they are encoded, the other sits
+ * at the head and sees the encoded bytes as they go out.
+ */
+public class LobbyTrafficHandler extends ChannelOutboundHandlerAdapter {
+    public static final String PACKETS_NAME = "geyserconnect-lobby-packets";
+    public static final String BYTES_NAME = "geyserconnect-lobby-bytes";
+
+    private final LobbyTraffic traffic;
+    private final boolean countBytes;
+    private final Set<Class<? extends BedrockPacket>> suppressed;
+
+    LobbyTrafficHandler(LobbyTraffic traffic, boolean countBytes, Set<Class<? extends BedrockPacket>> suppressed) {
+        this.traffic = traffic;
+        this.countBytes = countBytes;
+        this.suppressed = suppressed;
+    }
+
+    LobbyTraffic traffic() {
+        return traffic;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (countBytes) {
+            if (msg instanceof ByteBuf buf) {
+                traffic.addBytes(buf.readableBytes());
+            } else if (msg instanceof ByteBufHolder holder) {
+                traffic.addBytes(holder.content().readableBytes());
+            }
+        } else if (msg instanceof BedrockBatchWrapper batch) {
+            Iterator<BedrockPacketWrapper> iterator = batch.getPackets().iterator();
+            while (iterator.hasNext()) {
+                BedrockPacketWrapper wrapper = iterator.next();
+                if (isSuppressed(wrapper.getPacket())) {
+                    iterator.remove();
+                    wrapper.release();
+                } else {
+                    traffic.addPacket();
+                }
+            }
+
+            if (batch.getPackets().isEmpty()) {
+                batch.release();
+                promise.trySuccess();
+                return;
+            }
+        } else if (msg instanceof BedrockPacketWrapper wrapper) {
+            if (isSuppressed(wrapper.getPacket())) {
+                wrapper.release();
+                promise.trySuccess();
+                return;
+            }
+
+            traffic.addPacket();
+        }
+
+        super.write(ctx, msg, promise);
+    }
+
+    private boolean isSuppressed(BedrockPacket packet) {
+        if (packet != null && suppressed.contains(packet.getClass())) {
+            traffic.addSuppressed();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * The traffic sent to one session while it was in the menu
+     */
+    public static class LobbyTraffic {
+        private final long start = System.currentTimeMillis();
+        private final LongAdder packets = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder suppressed = new LongAdder();
+
+        void addPacket() {
+            packets.increment();
+        }
+
+        void addBytes(long amount) {
+            bytes.add(amount);
+        }
+
+        void addSuppressed() {
+            suppressed.increment();
+        }
+
+        public long packets() {
+            return packets.sum();
+        }
+
+        public long bytes() {
+            return bytes.sum();
+        }
+
+        public long suppressed() {
+            return suppressed.sum();
+        }
+
+        public long durationMillis() {
+            return System.currentTimeMillis() - start;
+        }
+    }
+}
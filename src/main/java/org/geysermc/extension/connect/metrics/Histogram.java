@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed buckets, each bucket is a striped counter so recording never locks
+ */
+public final class Histogram implements Metric {
+    public static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    public static final double[] HUMAN_BUCKETS = {0.25, 0.5, 1, 2, 5, 10, 30, 60, 120, 300};
+
+    private final String labels;
+    private final double[] buckets;
+    private final long[] bucketNanos;
+    private final LongAdder[] counts;
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram(String labels, double[] buckets) {
+        this.labels = labels;
+        this.buckets = buckets.clone();
+        this.bucketNanos = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            bucketNanos[i] = (long) (buckets[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // The last count is everything over the highest bucket
+        this.counts = new LongAdder[buckets.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void observeNanos(long nanos) {
+        int bucket = 0;
+        while (bucket < bucketNanos.length && nanos > bucketNanos[bucket]) {
+            bucket++;
+        }
+
+        counts[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Record the time since a {@link System#nanoTime()} reading
+     *
+     * @param startNanos When the timed thing started
+     */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : counts) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Estimate a quantile from the buckets
+     *
+     * @param quantile The quantile between 0 and 1
+     * @return The upper bound of the bucket the quantile falls in, in seconds
+     */
+    public double quantile(double quantile) {
+        long[] snapshot = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return buckets[i];
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public void write(StringBuilder builder, String name) {
+        String labelPrefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += counts[i].sum();
+            builder.append(name).append("_bucket").append(labelPrefix).append("le=\"").append(buckets[i]).append("\"} ").append(cumulative).append('\n');
+        }
+
+        cumulative += counts[buckets.length].sum();
+        builder.append(name).append("_bucket").append(labelPrefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        builder.append(name).append("_sum").append(labels).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+        builder.append(name).append("_count").append(labels).append(' ').append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The metrics registry, written out in the Prometheus text format by {@link MetricsServer}
+ */
+public final class Metrics {
+    private static final Map<String, Family> families = new LinkedHashMap<>();
+
+    public static final Counter JOINS = counter("geyserconnect_joins_total", "Players that have started joining");
+    public static final Counter FORMS_SENT = counter("geyserconnect_forms_sent_total", "Menu forms sent to players");
+    public static final Counter FORMS_DELAYED = counter("geyserconnect_form_responses_delayed_total", "Form responses held until the player was back within their budget");
+    public static final Histogram FORM_RESPONSE = histogram("geyserconnect_form_response_seconds", "Time between sending a menu form and the player answering", Histogram.HUMAN_BUCKETS);
+    public static final Histogram STORAGE_LOAD = histogram("geyserconnect_storage_seconds", "Time spent on custom server storage", Histogram.LATENCY_BUCKETS, "operation", "load");
+    public static final Histogram STORAGE_SAVE = histogram("geyserconnect_storage_seconds", "Time spent on custom server storage", Histogram.LATENCY_BUCKETS, "operation", "save");
+
+    // Recent activity for the stats command, rather than totals since startup
+    public static final RateWindow JOIN_RATE = new RateWindow(300);
+    public static final RateWindow TRANSFER_RATE = new RateWindow(300);
+    public static final TopDestinations DESTINATIONS = new TopDestinations(5);
+
+    private static final LongAdder menuSessions = new LongAdder();
+
+    /**
+     * The ways a player can leave the menu for a server
+     */
+    public enum Transfer {
+        BEDROCK,
+        JAVA,
+        VHOST,
+        DIRECT,
+        CLUSTER;
+
+        private final Counter counter = counter("geyserconnect_transfers_total", "Players sent to a server", "type", name().toLowerCase(Locale.ROOT));
+
+        public void increment() {
+            counter.increment();
+            TRANSFER_RATE.record();
+        }
+
+        public long count() {
+            return counter.value();
+        }
+    }
+
+    /**
+     * The reasons a player's menu action can be refused
+     */
+    public enum Rejection {
+        FORM_RATE,
+        EDIT_RATE,
+        SERVER_LIMIT,
+        INVALID_FIELD;
+
+        private final Counter counter = counter("geyserconnect_rejected_actions_total", "Menu actions refused", "reason", name().toLowerCase(Locale.ROOT));
+
+        public void increment() {
+            counter.increment();
+        }
+
+        public long count() {
+            return counter.value();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static void menuSessionStarted() {
+        menuSessions.increment();
+    }
+
+    public static void menuSessionEnded() {
+        menuSessions.decrement();
+    }
+
+    public static long menuSessions() {
+        return menuSessions.sum();
+    }
+
+    /**
+     * Create a counter
+     *
+     * @param name The metric name
+     * @param help What the metric counts
+     * @param labels Label names and values, alternating
+     * @return The counter
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        Counter counter = new Counter(labels(labels));
+        register(name, help, "counter", counter);
+        return counter;
+    }
+
+    /**
+     * Expose a count kept somewhere else
+     *
+     * @param name The metric name
+     * @param help What the metric counts
+     * @param value Reads the current count
+     * @param labels Label names and values, alternating
+     */
+    public static void counter(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, help, "counter", sample(labels(labels), value));
+    }
+
+    /**
+     * Expose a value that can go up and down
+     *
+     * @param name The metric name
+     * @param help What the metric measures
+     * @param value Reads the current value
+     * @param labels Label names and values, alternating
+     */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, help, "gauge", sample(labels(labels), value));
+    }
+
+    /**
+     * Create a histogram
+     *
+     * @param name The metric name
+     * @param help What the metric measures
+     * @param buckets The bucket upper bounds in seconds
+     * @param labels Label names and values, alternating
+     * @return The histogram
+     */
+    public static Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        Histogram histogram = new Histogram(labels(labels), buckets);
+        register(name, help, "histogram", histogram);
+        return histogram;
+    }
+
+    private static Metric sample(String labels, DoubleSupplier value) {
+        return new Sample(labels, value);
+    }
+
+    private static synchronized void register(String name, String help, String type, Metric metric) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type, new ArrayList<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type());
+        }
+        family.metrics().add(metric);
+    }
+
+    /**
+     * Remove every value read from somewhere else, used before registering them again after a restart
+     * so the old ones don't stay in the output reading what was stopped
+     */
+    public static synchronized void clearSamples() {
+        families.values().removeIf(family -> {
+            family.metrics().removeIf(metric -> metric instanceof Sample);
+            return family.metrics().isEmpty();
+        });
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"")
+                .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                .append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * @return Every metric in the Prometheus text format
+     */
+    public static synchronized String scrape() {
+        StringBuilder builder = new StringBuilder(8192);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            builder.append("# HELP ").append(entry.getKey()).append(' ').append(family.help()).append('\n');
+            builder.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type()).append('\n');
+            for (Metric metric : family.metrics()) {
+                metric.write(builder, entry.getKey());
+            }
+        }
+        return builder.toString();
+    }
+
+    private record Family(String help, String type, List<Metric> metrics) {
+    }
+
+    private record Sample(String labels, DoubleSupplier value) implements Metric {
+        @Override
+        public void write(StringBuilder builder, String name) {
+            builder.append(name).append(labels).append(' ').append(value.getAsDouble()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over the last few minutes in one second slots, for rates that follow what is happening now
+ * rather than averaging over the whole uptime.
+ * <p>
+ * Each slot packs the second it belongs to with its count so recording is a single compare and set.
+ */
+public final class RateWindow {
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray slots;
+
+    /**
+     * @param seconds The longest window a rate can be asked for over
+     */
+    public RateWindow(int seconds) {
+        this.slots = new AtomicLongArray(seconds + 1);
+    }
+
+    public void record() {
+        long second = System.currentTimeMillis() / 1000;
+        int index = (int) (second % slots.length());
+
+        while (true) {
+            long slot = slots.get(index);
+            long next;
+            if (slot >>> COUNT_BITS == second) {
+                if ((slot & COUNT_MASK) == COUNT_MASK) {
+                    // Saturated, there is no room left to count in this second
+                    return;
+                }
+                next = slot + 1;
+            } else {
+                next = (second << COUNT_BITS) | 1;
+            }
+
+            if (slots.compareAndSet(index, slot, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Work out the rate over the last few seconds, not counting the second still in progress
+     *
+     * @param seconds How far back to look, at most what the window was created with
+     * @return Events per second
+     */
+    public double rate(int seconds) {
+        seconds = Math.min(seconds, slots.length() - 1);
+        long now = System.currentTimeMillis() / 1000;
+
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long slot = slots.get(i);
+            long second = slot >>> COUNT_BITS;
+            if (second < now && second >= now - seconds) {
+                total += slot & COUNT_MASK;
+            }
+        }
+        return (double) total / seconds;
+    }
+}
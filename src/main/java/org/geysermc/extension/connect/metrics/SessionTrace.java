@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When a session reached each step between joining and being sent to a server
+ */
+public final class SessionTrace {
+    public static final double[] PHASE_BUCKETS = {0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    /**
+     * The steps of a session in the order they normally happen, each histogram measures the time since the previous step
+     */
+    public enum Phase {
+        JOINED,
+        INITIALIZED,
+        ADMITTED,
+        SERVERS_LOADED,
+        WELCOME_SHOWN,
+        MENU_SHOWN,
+        SELECTED,
+        RESOLVED,
+        TRANSFERRED;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+        private final Histogram histogram = Metrics.histogram("geyserconnect_session_phase_seconds",
+            "Time taken to reach each step between joining and being sent to a server", PHASE_BUCKETS, "phase", label);
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private final String name;
+    private final long[] marks = new long[Phase.values().length];
+    private long playerNanos;
+
+    SessionTrace(String name) {
+        this.name = name;
+        this.marks[Phase.JOINED.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Record reaching a step, only the first time is kept
+     *
+     * @param phase The step reached
+     */
+    synchronized void mark(Phase phase) {
+        if (marks[phase.ordinal()] != 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        marks[phase.ordinal()] = now;
+
+        Phase previous = previous(phase);
+        if (previous != null) {
+            long nanos = now - marks[previous.ordinal()];
+            phase.histogram.observeNanos(nanos);
+
+            // Reading the welcome message and picking a server is the player's time, not ours
+            if (previous == Phase.WELCOME_SHOWN || previous == Phase.MENU_SHOWN) {
+                playerNanos += nanos;
+            }
+        }
+    }
+
+    private Phase previous(Phase phase) {
+        for (int i = phase.ordinal() - 1; i >= 0; i--) {
+            if (marks[i] != 0) {
+                return Phase.values()[i];
+            }
+        }
+        return null;
+    }
+
+    synchronized long totalNanos() {
+        long last = marks[0];
+        for (long mark : marks) {
+            last = Math.max(last, mark);
+        }
+        return last - marks[0];
+    }
+
+    synchronized long systemNanos() {
+        return totalNanos() - playerNanos;
+    }
+
+    /**
+     * @return The session name, total times and the time to reach each step it went through
+     */
+    public synchronized String describe() {
+        List<String> phases = new ArrayList<>();
+        Phase previous = Phase.JOINED;
+        for (Phase phase : Phase.values()) {
+            if (phase == Phase.JOINED || marks[phase.ordinal()] == 0) {
+                continue;
+            }
+
+            phases.add(phase.label() + " +" + TimeUnit.NANOSECONDS.toMillis(marks[phase.ordinal()] - marks[previous.ordinal()]) + "ms");
+            previous = phase;
+        }
+
+        return name + ": total " + TimeUnit.NANOSECONDS.toMillis(totalNanos()) + "ms, system " + TimeUnit.NANOSECONDS.toMillis(systemNanos())
+            + "ms (" + String.join(", ", phases) + ")";
+    }
+}
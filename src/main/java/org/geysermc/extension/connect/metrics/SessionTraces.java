@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.metrics;
+
+import org.geysermc.extension.connect.utils.Utils;
+import org.geysermc.geyser.session.GeyserSession;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks where each session's time goes between joining and being sent to a server,
+ * and keeps the breakdown of the most recent slow sessions
+ */
+public final class SessionTraces {
+    public static final int DEFAULT_SLOW_SECONDS = 5;
+
+    private static final int SLOW_SAMPLE_SIZE = 32;
+
+    private static final Map<GeyserSession, SessionTrace> traces = new ConcurrentHashMap<>();
+    private static final Deque<String> slowSessions = new ArrayDeque<>();
+
+    private static final Histogram TIME_TO_PLAY = Metrics.histogram("geyserconnect_time_to_play_seconds",
+        "Time from joining to being sent to a server", SessionTrace.PHASE_BUCKETS);
+    private static final Histogram SYSTEM_TIME_TO_PLAY = Metrics.histogram("geyserconnect_time_to_play_system_seconds",
+        "Time from joining to being sent to a server, not counting time spent reading and picking in the menu", SessionTrace.PHASE_BUCKETS);
+    private static final Counter ABANDONED = Metrics.counter("geyserconnect_sessions_abandoned_total", "Sessions that left before being sent to a server");
+
+    private static volatile long slowNanos = TimeUnit.SECONDS.toNanos(DEFAULT_SLOW_SECONDS);
+
+    private SessionTraces() {
+    }
+
+    /**
+     * @param seconds How much system time makes a session slow enough to keep
+     */
+    public static void slowThreshold(int seconds) {
+        slowNanos = TimeUnit.SECONDS.toNanos(seconds > 0 ? seconds : DEFAULT_SLOW_SECONDS);
+    }
+
+    public static void start(GeyserSession session) {
+        traces.put(session, new SessionTrace(Utils.displayName(session)));
+    }
+
+    public static void mark(GeyserSession session, SessionTrace.Phase phase) {
+        SessionTrace trace = traces.get(session);
+        if (trace != null) {
+            trace.mark(phase);
+        }
+    }
+
+    /**
+     * The session has been sent to a server
+     *
+     * @param session The session
+     */
+    public static void finish(GeyserSession session) {
+        SessionTrace trace = traces.remove(session);
+        if (trace == null) {
+            return;
+        }
+
+        trace.mark(SessionTrace.Phase.TRANSFERRED);
+        TIME_TO_PLAY.observeNanos(trace.totalNanos());
+
+        long systemNanos = trace.systemNanos();
+        SYSTEM_TIME_TO_PLAY.observeNanos(systemNanos);
+
+        if (systemNanos >= slowNanos) {
+            synchronized (slowSessions) {
+                if (slowSessions.size() >= SLOW_SAMPLE_SIZE) {
+                    slowSessions.removeFirst();
+                }
+                slowSessions.addLast(trace.describe());
+            }
+        }
+    }
+
+    /**
+     * The session disconnected without being sent to a server
+     *
+     * @param session The session
+     */
+    public static void abandon(GeyserSession session) {
+        if (traces.remove(session) != null) {
+            ABANDONED.increment();
+        }
+    }
+
+    /**
+     * @return The most recent slow sessions, oldest first
+     */
+    public static List<String> slowSessions() {
+        synchronized (slowSessions) {
+            return new ArrayList<>(slowSessions);
+        }
+    }
+
+    public static int inProgress() {
+        return traces.size();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.metrics;
+
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.admission.AdmissionController;
+import org.geysermc.extension.connect.dns.DnsCache;
+import org.geysermc.extension.connect.dns.SpeculativeWarmup;
+import org.geysermc.extension.connect.utils.ServerManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A summary of how this node is doing for the stats command, built only from counters the hot paths
+ * already keep so asking for it costs them nothing
+ */
+public final class StatsReport {
+    private static final int TOP_DESTINATIONS = 5;
+
+    private StatsReport() {
+    }
+
+    /**
+     * @param geyserConnect The running extension
+     * @param connected Sessions connected to Geyser
+     * @return The summary, one line per entry
+     */
+    public static List<String> lines(GeyserConnect geyserConnect, int connected) {
+        List<String> lines = new ArrayList<>();
+
+        long inMenu = Metrics.menuSessions();
+        lines.add(String.format(Locale.ROOT, "Sessions: %d in the menu, %d handed off, %d connected",
+            inMenu, Math.max(0, connected - inMenu), connected));
+
+        lines.add(String.format(Locale.ROOT, "Joins: %.1f/s over 1m, %.1f/s over 5m, %d total",
+            Metrics.JOIN_RATE.rate(60), Metrics.JOIN_RATE.rate(300), Metrics.JOINS.value()));
+
+        StringBuilder transfers = new StringBuilder(String.format(Locale.ROOT, "Transfers: %.1f/s over 1m, %.1f/s over 5m (",
+            Metrics.TRANSFER_RATE.rate(60), Metrics.TRANSFER_RATE.rate(300)));
+        for (Metrics.Transfer transfer : Metrics.Transfer.values()) {
+            if (transfer.ordinal() > 0) {
+                transfers.append(", ");
+            }
+            transfers.append(transfer.name().toLowerCase(Locale.ROOT)).append(' ').append(transfer.count());
+        }
+        lines.add(transfers.append(')').toString());
+
+        lines.add(String.format(Locale.ROOT, "Forms: %d sent, players answer in p50 %s p95 %s",
+            Metrics.FORMS_SENT.value(), duration(Metrics.FORM_RESPONSE, 0.5), duration(Metrics.FORM_RESPONSE, 0.95)));
+
+        lines.add("Storage: load " + percentiles(Metrics.STORAGE_LOAD) + ", save " + percentiles(Metrics.STORAGE_SAVE)
+            + ", " + ServerManager.savesInProgress() + " saves in progress");
+
+        AdmissionController admission = geyserConnect.admissionController();
+        lines.add(String.format(Locale.ROOT, "Join queue: %d waiting, longest wait %dms, %d admitted, %d queued, %d rejected",
+            admission.queueLength(), admission.maxWaitMillis(), admission.admittedCount(), admission.queuedCount(), admission.rejectedCount()));
+
+        DnsCache dnsCache = geyserConnect.dnsCache();
+        SpeculativeWarmup warmup = geyserConnect.speculativeWarmup();
+        lines.add(String.format(Locale.ROOT, "DNS cache: address ready for %.1f%% of Java hand offs (%d ready, %d not, %d hosts), speculation ready for %.1f%% of Java hand offs",
+            dnsCache.hitRate() * 100, dnsCache.hits(), dnsCache.misses(), dnsCache.size(), warmup.hitRate() * 100));
+
+        List<Map.Entry<String, Long>> top = Metrics.DESTINATIONS.top(TOP_DESTINATIONS);
+        if (top.isEmpty()) {
+            lines.add("Top destinations (last " + Metrics.DESTINATIONS.minutes() + " minutes): none");
+        } else {
+            lines.add("Top destinations (last " + Metrics.DESTINATIONS.minutes() + " minutes):");
+            for (int i = 0; i < top.size(); i++) {
+                lines.add("  " + (i + 1) + ". " + top.get(i).getKey() + " - " + top.get(i).getValue());
+            }
+        }
+
+        return lines;
+    }
+
+    private static String percentiles(Histogram histogram) {
+        if (histogram.count() == 0) {
+            return "none yet";
+        }
+        return "p50 " + duration(histogram, 0.5) + " p95 " + duration(histogram, 0.95) + " p99 " + duration(histogram, 0.99) + " (" + histogram.count() + ")";
+    }
+
+    /**
+     * Histograms only know which bucket a value fell in, so this is the bucket's upper bound
+     */
+    private static String duration(Histogram histogram, double quantile) {
+        if (histogram.count() == 0) {
+            return "-";
+        }
+
+        double seconds = histogram.quantile(quantile);
+        if (Double.isInfinite(seconds)) {
+            return "slower than every bucket";
+        }
+        return seconds < 1 ? "<" + number(seconds * 1000) + "ms" : "<" + number(seconds) + "s";
+    }
+
+    private static String number(double value) {
+        // Bucket bounds are short decimals, keep them that way instead of showing rounding noise
+        double rounded = Math.round(value * 1000) / 1000D;
+        return rounded == (long) rounded ? String.valueOf((long) rounded) : String.valueOf(rounded);
+    }
+}
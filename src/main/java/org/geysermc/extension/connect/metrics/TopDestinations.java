@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where players have been sent over the last few minutes, kept in one minute buckets that are
+ * replaced as they age out
+ */
+public final class TopDestinations {
+    private static final String OTHER = "Other";
+
+    // Global servers are far fewer than this, it only stops a bucket growing without end
+    private static final int MAX_DESTINATIONS = 256;
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    private record Bucket(long minute, Map<String, LongAdder> counts) {
+    }
+
+    /**
+     * @param minutes How many minutes to remember
+     */
+    public TopDestinations(int minutes) {
+        this.buckets = new AtomicReferenceArray<>(minutes);
+    }
+
+    public void record(String destination) {
+        long minute = System.currentTimeMillis() / 60000;
+        int index = (int) (minute % buckets.length());
+
+        Bucket bucket = buckets.get(index);
+        if (bucket == null || bucket.minute() != minute) {
+            Bucket fresh = new Bucket(minute, new ConcurrentHashMap<>());
+            // If someone else got there first use theirs
+            bucket = buckets.compareAndSet(index, bucket, fresh) ? fresh : buckets.get(index);
+        }
+
+        // Only lock when a destination is seen for the first time this minute
+        LongAdder count = bucket.counts().get(destination);
+        if (count == null) {
+            // Count anything past the limit together, checked without locking so it can go a little over
+            String key = bucket.counts().size() < MAX_DESTINATIONS ? destination : OTHER;
+            count = bucket.counts().computeIfAbsent(key, ignored -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * @param limit How many destinations to return
+     * @return The most popular destinations still in the window, most popular first
+     */
+    public List<Map.Entry<String, Long>> top(int limit) {
+        long oldest = System.currentTimeMillis() / 60000 - buckets.length() + 1;
+
+        Map<String, Long> totals = new HashMap<>();
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.minute() >= oldest) {
+                bucket.counts().forEach((destination, count) -> totals.merge(destination, count.sum(), Long::sum));
+            }
+        }
+
+        List<Map.Entry<String, Long>> top = new ArrayList<>(totals.entrySet());
+        top.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    /**
+     * @return How many minutes are remembered
+     */
+    public int minutes() {
+        return buckets.length();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ping;
+
+import org.geysermc.extension.connect.config.PingSection;
+import org.geysermc.geyser.api.event.connection.GeyserBedrockPingEvent;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Answers pings from a response built every few seconds, so a flood of pings only ever
+ * reads a field instead of counting players each time
+ */
+public class PingCache {
+    public static final int DEFAULT_REFRESH_INTERVAL = 2;
+
+    private final Supplier<String> primaryMotd;
+    private final Supplier<String> secondaryMotd;
+    private final IntSupplier players;
+    private final IntSupplier maxPlayers;
+    private final ScheduledFuture<?> refreshTask;
+
+    private volatile Response response;
+
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @param section The ping config
+     * @param scheduler Where to refresh the response
+     * @param primaryMotd The first line of the MOTD
+     * @param secondaryMotd The second line of the MOTD
+     * @param players The player count to show
+     * @param maxPlayers The max player count to show
+     */
+    public PingCache(PingSection section, ScheduledExecutorService scheduler, Supplier<String> primaryMotd, Supplier<String> secondaryMotd, IntSupplier players, IntSupplier maxPlayers) {
+        this.primaryMotd = primaryMotd;
+        this.secondaryMotd = secondaryMotd;
+        this.players = players;
+        this.maxPlayers = maxPlayers;
+
+        refresh();
+
+        int interval = section.refreshInterval() > 0 ? section.refreshInterval() : DEFAULT_REFRESH_INTERVAL;
+        this.refreshTask = scheduler.scheduleAtFixedRate(this::refresh, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private void refresh() {
+        response = new Response(primaryMotd.get(), secondaryMotd.get(), players.getAsInt(), maxPlayers.getAsInt());
+        refreshes.increment();
+    }
+
+    /**
+     * Fill in a ping with the cached response
+     *
+     * @param event The ping to answer
+     */
+    public void apply(GeyserBedrockPingEvent event) {
+        Response response = this.response;
+        event.primaryMotd(response.primaryMotd());
+        event.secondaryMotd(response.secondaryMotd());
+        event.playerCount(response.players());
+        event.maxPlayerCount(response.maxPlayers());
+        pings.increment();
+    }
+
+    public Response response() {
+        return response;
+    }
+
+    public void shutdown() {
+        refreshTask.cancel(false);
+    }
+
+    public long pings() {
+        return pings.sum();
+    }
+
+    public long refreshes() {
+        return refreshes.sum();
+    }
+
+    public record Response(String primaryMotd, String secondaryMotd, int players, int maxPlayers) {
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.reload;
+
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.config.Config;
+import org.geysermc.extension.connect.config.ConfigLoader;
+import org.geysermc.extension.connect.language.LanguageManager;
+import org.geysermc.extension.connect.utils.PhaseTimer;
+import org.geysermc.extension.connect.utils.Server;
+import org.geysermc.extension.connect.utils.ServerDirectory;
+import org.geysermc.extension.connect.vhost.VirtualHostRouter;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reloads the config, servers and language files without a restart.
+ * <p>
+ * The new files are parsed and validated on a background thread, then everything built from them
+ * is swapped in as a single {@link Snapshot}. Anything that didn't change is carried over from the
+ * old snapshot rather than rebuilt. If anything fails the current snapshot is kept.
+ */
+public class ReloadManager {
+    private static final long DEBOUNCE_MILLIS = 1000;
+
+    private final GeyserConnect geyserConnect;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<Snapshot> swap;
+    private final ExecutorService executor;
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private WatchService watchService;
+
+    /**
+     * @param geyserConnect The extension to load files for
+     * @param scheduler Used to wait for file changes to settle
+     * @param swap Installs a new snapshot
+     */
+    public ReloadManager(GeyserConnect geyserConnect, ScheduledExecutorService scheduler, Consumer<Snapshot> swap) {
+        this.geyserConnect = geyserConnect;
+        this.scheduler = scheduler;
+        this.swap = swap;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GeyserConnect Reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load the first snapshot on the calling thread
+     *
+     * @param timer Times each part of the load
+     * @return The loaded snapshot
+     */
+    public Snapshot load(PhaseTimer timer) {
+        Snapshot snapshot = build(null, timer);
+        swap.accept(snapshot);
+        watch(snapshot.config().watchFiles());
+        return snapshot;
+    }
+
+    /**
+     * Reload everything in the background, keeping the current snapshot if anything is invalid
+     *
+     * @return A description of what changed
+     */
+    public CompletableFuture<String> reload() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                PhaseTimer timer = new PhaseTimer();
+                Snapshot previous = geyserConnect.snapshot();
+                Snapshot snapshot = build(previous, timer);
+                swap.accept(snapshot);
+                reloads.increment();
+
+                watch(snapshot.config().watchFiles());
+                return describe(previous, snapshot) + " in " + timer.elapsedMillis() + "ms (" + timer.summary() + ")";
+            } catch (RuntimeException e) {
+                failures.increment();
+                throw e;
+            }
+        }, executor);
+    }
+
+    /**
+     * Swap in a new server directory without reloading anything else.
+     * Runs in order with reloads so neither loses the other's changes
+     *
+     * @param update Creates the new directory from the current one
+     * @return Completes once the new directory is in use
+     */
+    public CompletableFuture<Void> updateServerDirectory(UnaryOperator<ServerDirectory> update) {
+        return CompletableFuture.runAsync(() -> {
+            Snapshot previous = geyserConnect.snapshot();
+            ServerDirectory serverDirectory = update.apply(previous.serverDirectory());
+            if (serverDirectory != previous.serverDirectory()) {
+                swap.accept(new Snapshot(previous.config(), serverDirectory, previous.virtualHostRouter(), previous.languageManager(), previous.languageStamp()));
+            }
+        }, executor);
+    }
+
+    private Snapshot build(Snapshot previous, PhaseTimer timer) {
+        Config config = timer.time("config", () -> ConfigLoader.load(geyserConnect, GeyserConnect.class, Config.class));
+        if (config == null) {
+            throw new IllegalStateException("Failed to load config.yml");
+        }
+
+        validate(config);
+
+        // Everything else only depends on the config, so build it all at once
+        CompletableFuture<ServerDirectory> serverDirectory = CompletableFuture.supplyAsync(() -> timer.time("servers", () ->
+            ServerDirectory.load(geyserConnect, config.servers(), config.serversFile(), previous != null ? previous.serverDirectory() : null)));
+
+        CompletableFuture<VirtualHostRouter> virtualHostRouter = CompletableFuture.supplyAsync(() -> timer.time("vhost", () -> {
+            if (previous != null && Objects.equals(previous.config().vhost(), config.vhost())) {
+                return previous.virtualHostRouter();
+            }
+            return VirtualHostRouter.of(config.vhost());
+        }));
+
+        CompletableFuture<Languages> languages = CompletableFuture.supplyAsync(() -> timer.time("languages", () -> {
+            String languageStamp = LanguageManager.stamp();
+            if (previous != null && previous.languageStamp().equals(languageStamp) && Objects.equals(previous.config().language(), config.language())) {
+                return new Languages(previous.languageManager(), languageStamp);
+            }
+
+            LanguageManager languageManager = new LanguageManager();
+            languageManager.loadLanguageFromConfig(config.language());
+
+            // Creating the manager may have written the default language file
+            return new Languages(languageManager, LanguageManager.stamp());
+        }));
+
+        try {
+            return new Snapshot(config, serverDirectory.join(), virtualHostRouter.join(), languages.join().manager(), languages.join().stamp());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static void validate(Config config) {
+        if (config.pageSize() < 0) {
+            throw new IllegalArgumentException("page-size can't be negative");
+        }
+
+        if (config.transferRate() < 0) {
+            throw new IllegalArgumentException("transfer-rate can't be negative");
+        }
+
+        if (config.customServers() == null) {
+            throw new IllegalArgumentException("custom-servers is missing");
+        }
+
+        if (config.vhost() != null && config.vhost().enabled() && (config.vhost().domains() == null || config.vhost().domains().isEmpty())) {
+            throw new IllegalArgumentException("vhost is enabled but has no domains");
+        }
+
+        if (config.servers() != null) {
+            for (Server server : config.servers()) {
+                if (server.address() == null || server.address().isBlank()) {
+                    throw new IllegalArgumentException("Server '" + server.name() + "' has no address");
+                }
+
+                if (server.port() > 65535) {
+                    throw new IllegalArgumentException("Server " + server.address() + " has an invalid port");
+                }
+            }
+        }
+    }
+
+    private String describe(Snapshot previous, Snapshot snapshot) {
+        List<String> changes = new ArrayList<>();
+        if (previous.serverDirectory() != snapshot.serverDirectory()) {
+            Set<Server> before = new HashSet<>(previous.serverDirectory().servers());
+            Set<Server> after = new HashSet<>(snapshot.serverDirectory().servers());
+
+            long added = after.stream().filter(server -> !before.contains(server)).count();
+            long removed = before.stream().filter(server -> !after.contains(server)).count();
+            changes.add("servers (+" + added + " -" + removed + ")");
+        }
+
+        if (previous.virtualHostRouter() != snapshot.virtualHostRouter()) {
+            changes.add("vhost");
+        }
+
+        if (previous.languageManager() != snapshot.languageManager()) {
+            changes.add("languages");
+        }
+
+        Config before = previous.config();
+        Config after = snapshot.config();
+        if (before.pageSize() != after.pageSize() || before.transferRate() != after.transferRate()
+            || before.hardPlayerLimit() != after.hardPlayerLimit() || !Objects.equals(before.lobby(), after.lobby())
+            || !Objects.equals(before.welcomeFile(), after.welcomeFile()) || before.watchFiles() != after.watchFiles()
+            || !Objects.equals(before.limits(), after.limits())) {
+            changes.add("settings");
+        }
+
+        // These are only read when the extension starts
+        List<String> needsRestart = new ArrayList<>();
+        if (!Objects.equals(before.customServers(), after.customServers())) {
+            needsRestart.add("custom-servers");
+        }
+        if (!Objects.equals(before.admission(), after.admission())) {
+            needsRestart.add("admission");
+        }
+        if (!Objects.equals(before.dns(), after.dns())) {
+            needsRestart.add("dns");
+        }
+        if (!Objects.equals(before.serverFeed(), after.serverFeed())) {
+            needsRestart.add("server-feed");
+        }
+        if (!Objects.equals(before.cluster(), after.cluster())) {
+            needsRestart.add("cluster");
+        }
+        if (!Objects.equals(before.ping(), after.ping())) {
+            needsRestart.add("ping");
+        }
+
+        if (!needsRestart.isEmpty()) {
+            geyserConnect.logger().warning("Changes to " + String.join(", ", needsRestart) + " need a restart to apply");
+        }
+
+        return changes.isEmpty() ? "nothing changed" : "updated " + String.join(", ", changes);
+    }
+
+    /**
+     * Start or stop reloading when the config, servers or language files change
+     *
+     * @param enabled If the files should be watched
+     */
+    public synchronized void watch(boolean enabled) {
+        if (enabled == (watchService != null)) {
+            return;
+        }
+
+        if (!enabled) {
+            stopWatching();
+            return;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+
+            Set<Path> folders = new HashSet<>();
+            folders.add(geyserConnect.dataFolder().toAbsolutePath());
+            folders.add(LanguageManager.langFolder());
+
+            String serversFile = geyserConnect.config().serversFile();
+            if (serversFile != null && !serversFile.isEmpty()) {
+                Path parent = geyserConnect.dataFolder().resolve(serversFile).toAbsolutePath().getParent();
+                if (parent != null) {
+                    folders.add(parent);
+                }
+            }
+
+            for (Path folder : folders) {
+                if (folder.toFile().isDirectory()) {
+                    folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                }
+            }
+        } catch (IOException e) {
+            geyserConnect.logger().error("Failed to watch the config files", e);
+            stopWatching();
+            return;
+        }
+
+        WatchService service = watchService;
+        Thread thread = new Thread(() -> watchLoop(service), "GeyserConnect File Watcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        geyserConnect.logger().info("Watching the config, servers and language files for changes");
+    }
+
+    private void watchLoop(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean relevant = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.context() instanceof Path path && isWatched(path.getFileName().toString())) {
+                    relevant = true;
+                }
+            }
+            key.reset();
+
+            // Editors often write a file several times, so wait for it to settle
+            if (relevant && reloadScheduled.compareAndSet(false, true)) {
+                scheduler.schedule(() -> {
+                    reloadScheduled.set(false);
+                    reload().whenComplete((summary, throwable) -> {
+                        if (throwable != null) {
+                            geyserConnect.logger().error("Failed to reload changed files, keeping the current config: " + throwable.getCause().getMessage());
+                        } else {
+                            geyserConnect.logger().info("Reloaded changed files: " + summary);
+                        }
+                    });
+                }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private boolean isWatched(String fileName) {
+        if (fileName.equals("config.yml") || fileName.endsWith(".lang")) {
+            return true;
+        }
+
+        String serversFile = geyserConnect.config().serversFile();
+        return serversFile != null && !serversFile.isEmpty() && Path.of(serversFile).getFileName().toString().equals(fileName);
+    }
+
+    private void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+            watchService = null;
+        }
+    }
+
+    public long reloads() {
+        return reloads.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public void shutdown() {
+        watch(false);
+        executor.shutdownNow();
+    }
+
+    private record Languages(LanguageManager manager, String stamp) {
+    }
+}
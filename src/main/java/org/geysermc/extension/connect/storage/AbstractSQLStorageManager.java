@@ -27,11 +27,13 @@ package org.geysermc.extension.connect.storage;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.jfr.StorageEvent;
+import org.geysermc.extension.connect.utils.PlayerServers;
 import org.geysermc.extension.connect.utils.Server;
-import org.geysermc.extension.connect.utils.ServerManager;
 import org.geysermc.extension.connect.utils.Utils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -39,9 +41,12 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class AbstractSQLStorageManager extends AbstractStorageManager {
     protected Connection connection;
+    // There is only one connection, so saves take turns with it
+    private final ReentrantLock lock = new ReentrantLock();
 
     @Override
     public void setupStorage() {
@@ -52,52 +57,178 @@ public abstract class AbstractSQLStorageManager extends AbstractStorageManager {
                 createPlayersTable.executeUpdate("CREATE TABLE IF NOT EXISTS players (xuid VARCHAR(32), servers TEXT, PRIMARY KEY(xuid));");
             }
         } catch (ClassNotFoundException | SQLException e) {
-            GeyserConnect.instance().logger().severe("Unable to connect to MySQL database!", e);
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            throw new IllegalStateException("Unable to connect to the " + backendName() + " database", e);
         }
     }
 
     protected abstract void connectToDatabase() throws ClassNotFoundException, SQLException;
 
+    /**
+     * @return The database name shown in profiling events
+     */
+    protected abstract String backendName();
+
+    /**
+     * Batches share the one connection, so saving them on more threads would only have them wait on each other
+     */
+    @Override
+    public int maxConcurrentBatches() {
+        return 1;
+    }
+
+    // Only called once every save has finished or the shutdown deadline has passed,
+    // so a save still holding the connection is stuck on the database and shouldn't hold up shutdown
     @Override
     public void closeStorage() {
+        if (!lock.tryLock()) {
+            GeyserConnect.instance().logger().warning("A save is still waiting on the database, aborting the SQL connection");
+            try {
+                connection.abort(runnable -> {
+                    Thread thread = new Thread(runnable, "GeyserConnect SQL Abort");
+                    thread.setDaemon(true);
+                    thread.start();
+                });
+            } catch (SQLException exception) {
+                GeyserConnect.instance().logger().error("Failed to abort SQL connection", exception);
+            }
+            return;
+        }
+
         try {
             connection.close();
         } catch (SQLException exception) {
             GeyserConnect.instance().logger().error("Failed to close SQL connection", exception);
+        } finally {
+            lock.unlock();
         }
     }
 
+    // Locked so a single save can't end up inside a batch's transaction
     @Override
-    public void saveServers(org.geysermc.api.connection.Connection session) {
+    public boolean saveServers(org.geysermc.api.connection.Connection session, List<Server> servers) {
+        lock.lock();
+        try {
+            return saveServersLocked(session, servers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean saveServersLocked(org.geysermc.api.connection.Connection session, List<Server> servers) {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+
+        String payload = "";
+        boolean saved = false;
+
         // replace into works on MySQL and SQLite
         try (PreparedStatement updatePlayersServers = connection.prepareStatement("REPLACE INTO players(xuid, servers) VALUES(?, ?)")) {
+            payload = Utils.OBJECT_MAPPER.writeValueAsString(servers);
             updatePlayersServers.setString(1, session.xuid());
-            updatePlayersServers.setString(2, Utils.OBJECT_MAPPER.writeValueAsString(ServerManager.getServers(session)));
+            updatePlayersServers.setString(2, payload);
             updatePlayersServers.executeUpdate();
+            saved = true;
         } catch (IOException | SQLException exception) {
             GeyserConnect.instance().logger().error("Couldn't save servers for " + session.bedrockUsername(), exception);
         }
+
+        if (event.shouldCommit()) {
+            event.operation = StorageEvent.SAVE;
+            event.success = saved;
+            event.backend = backendName();
+            event.xuid = session.xuid();
+            event.servers = servers.size();
+            event.payloadBytes = payload.getBytes(StandardCharsets.UTF_8).length;
+            event.commit();
+        }
+
+        return saved;
+    }
+
+    /**
+     * Save every player in one transaction, a single round trip and commit instead of one per player
+     */
+    @Override
+    public List<PlayerServers> saveServers(List<PlayerServers> players) {
+        lock.lock();
+        try {
+            return saveServersLocked(players);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<PlayerServers> saveServersLocked(List<PlayerServers> players) {
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement updatePlayersServers = connection.prepareStatement("REPLACE INTO players(xuid, servers) VALUES(?, ?)")) {
+                for (PlayerServers player : players) {
+                    updatePlayersServers.setString(1, player.session().xuid());
+                    updatePlayersServers.setString(2, Utils.OBJECT_MAPPER.writeValueAsString(player.servers()));
+                    updatePlayersServers.addBatch();
+                }
+                updatePlayersServers.executeBatch();
+                connection.commit();
+                return List.of();
+            } catch (IOException | SQLException exception) {
+                connection.rollback();
+                GeyserConnect.instance().logger().error("Couldn't save servers for " + players.size() + " players", exception);
+                return players;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException exception) {
+            GeyserConnect.instance().logger().error("Couldn't save servers for " + players.size() + " players", exception);
+            return players;
+        }
     }
 
     @Override
     public List<Server> loadServers(org.geysermc.api.connection.Connection session) {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+
         List<Server> servers = new ArrayList<>();
+        long payloadBytes = 0;
 
         try (PreparedStatement getPlayersServers = connection.prepareStatement("SELECT servers FROM players WHERE xuid=?")) {
             getPlayersServers.setString(1, session.xuid());
             ResultSet rs = getPlayersServers.executeQuery();
 
             while (rs.next()) {
-                List<Server> loadedServers = Utils.OBJECT_MAPPER.readValue(rs.getString("servers"), new TypeReference<>() {
+                String payload = rs.getString("servers");
+                // Encoding is only worth it when the event is being recorded
+                if (event.isEnabled()) {
+                    payloadBytes += payload.getBytes(StandardCharsets.UTF_8).length;
+                }
+
+                List<Server> loadedServers = Utils.OBJECT_MAPPER.readValue(payload, new TypeReference<>() {
                 });
                 if (loadedServers != null) {
                     servers.addAll(loadedServers);
                 }
             }
+            event.success = true;
         } catch (IOException | SQLException exception) {
             GeyserConnect.instance().logger().error("Couldn't load servers for " + session.bedrockUsername(), exception);
         }
 
+        if (event.shouldCommit()) {
+            event.operation = StorageEvent.LOAD;
+            event.backend = backendName();
+            event.xuid = session.xuid();
+            event.servers = servers.size();
+            event.payloadBytes = payloadBytes;
+            event.commit();
+        }
+
         return servers;
     }
 }
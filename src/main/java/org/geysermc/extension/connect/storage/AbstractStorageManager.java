@@ -27,6 +27,7 @@ package org.geysermc.extension.connect.storage;
 
 import com.fasterxml.jackson.annotation.JsonValue;
 import org.geysermc.api.connection.Connection;
+import org.geysermc.extension.connect.utils.PlayerServers;
 import org.geysermc.extension.connect.utils.Server;
 
 import java.util.ArrayList;
@@ -40,7 +41,39 @@ public class AbstractStorageManager {
     public void closeStorage() {
     }
 
-    public void saveServers(Connection session) {
+    /**
+     * Save a player's servers
+     *
+     * @param session The player
+     * @param servers Their servers
+     * @return If they were saved
+     */
+    public boolean saveServers(Connection session, List<Server> servers) {
+        return true;
+    }
+
+    /**
+     * Save many players at once, for when everyone has to be saved before shutting down.
+     * Storage types that can save several players in one go should override this.
+     *
+     * @param players The players to save
+     * @return The players that couldn't be saved
+     */
+    public List<PlayerServers> saveServers(List<PlayerServers> players) {
+        List<PlayerServers> failed = new ArrayList<>();
+        for (PlayerServers player : players) {
+            if (!saveServers(player.session(), player.servers())) {
+                failed.add(player);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return How many batches {@link #saveServers(List)} can save at the same time
+     */
+    public int maxConcurrentBatches() {
+        return Integer.MAX_VALUE;
     }
 
     public List<Server> loadServers(Connection session) {
@@ -38,8 +38,8 @@ public class DisabledStorageManager extends AbstractStorageManager {
     }
 
     @Override
-    public void saveServers(Connection session) {
-
+    public boolean saveServers(Connection session, List<Server> servers) {
+        return true;
     }
 
     @Override
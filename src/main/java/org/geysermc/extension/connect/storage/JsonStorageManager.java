@@ -28,12 +28,15 @@ package org.geysermc.extension.connect.storage;
 import com.fasterxml.jackson.core.type.TypeReference;
 import org.geysermc.api.connection.Connection;
 import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.jfr.StorageEvent;
 import org.geysermc.extension.connect.utils.Server;
-import org.geysermc.extension.connect.utils.ServerManager;
 import org.geysermc.extension.connect.utils.Utils;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,26 +52,66 @@ public class JsonStorageManager extends AbstractStorageManager {
     }
 
     @Override
-    public void saveServers(Connection session) {
+    public boolean saveServers(Connection session, List<Server> servers) {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+
+        File file = dataFolder.resolve(session.xuid() + ".json").toFile();
+        boolean saved = false;
         try {
-            Utils.OBJECT_MAPPER.writeValue(dataFolder.resolve(session.xuid() + ".json").toFile(), ServerManager.getServers(session));
+            // Write beside the file then swap it in, so a save interrupted by shutdown
+            // or racing another save of the same player never leaves a half written file
+            Path temp = Files.createTempFile(dataFolder, session.xuid(), ".tmp");
+            try {
+                Utils.OBJECT_MAPPER.writeValue(temp.toFile(), servers);
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                saved = true;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
         } catch (IOException ignored) {
         }
+
+        if (event.shouldCommit()) {
+            event.operation = StorageEvent.SAVE;
+            event.success = saved;
+            event.backend = "json";
+            event.xuid = session.xuid();
+            event.servers = servers.size();
+            event.payloadBytes = file.length();
+            event.commit();
+        }
+
+        return saved;
     }
 
     @Override
     public List<Server> loadServers(Connection session) {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+
         List<Server> servers = new ArrayList<>();
 
+        File file = dataFolder.resolve(session.xuid() + ".json").toFile();
         try {
-            List<Server> loadedServers = Utils.OBJECT_MAPPER.readValue(dataFolder.resolve(session.xuid() + ".json").toFile(), new TypeReference<>() {
+            List<Server> loadedServers = Utils.OBJECT_MAPPER.readValue(file, new TypeReference<>() {
             });
             if (loadedServers != null) {
                 servers.addAll(loadedServers);
             }
+            event.success = true;
         } catch (IOException ignored) {
         }
 
+        if (event.shouldCommit()) {
+            event.operation = StorageEvent.LOAD;
+            event.backend = "json";
+            event.xuid = session.xuid();
+            event.servers = servers.size();
+            event.payloadBytes = file.length();
+            event.commit();
+        }
+
         return servers;
     }
 }
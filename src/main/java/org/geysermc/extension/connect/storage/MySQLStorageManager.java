@@ -38,4 +38,9 @@ public class MySQLStorageManager extends AbstractSQLStorageManager {
         MySQLConnectionSection connectionInformation = GeyserConnect.instance().config().customServers().mysql();
         connection = DriverManager.getConnection("jdbc:mysql://" + connectionInformation.host() + ":" + connectionInformation.port() + "/" + connectionInformation.database(), connectionInformation.user(), connectionInformation.pass());
     }
+
+    @Override
+    protected String backendName() {
+        return "mysql";
+    }
 }
@@ -36,4 +36,9 @@ public class SQLiteStorageManager extends AbstractSQLStorageManager {
         Class.forName("org.sqlite.JDBC");
         connection = DriverManager.getConnection("jdbc:sqlite:" + GeyserConnect.instance().dataFolder().resolve("players.db"));
     }
+
+    @Override
+    protected String backendName() {
+        return "sqlite";
+    }
 }
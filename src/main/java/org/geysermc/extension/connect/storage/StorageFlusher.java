@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.storage;
+
+import org.geysermc.extension.connect.utils.PlayerServers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves every player that still has servers loaded when GeyserConnect stops, split into batches
+ * that are saved in parallel where the storage allows it and given up on once the deadline passes
+ */
+public class StorageFlusher {
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_THREADS = 8;
+
+    /**
+     * What happened to each player
+     *
+     * @param saved The players that were saved
+     * @param failed The players storage couldn't save
+     * @param abandoned The players that were still waiting when the deadline passed
+     * @param millis How long it took
+     */
+    public record Result(List<PlayerServers> saved, List<PlayerServers> failed, List<PlayerServers> abandoned, long millis) {
+        public int total() {
+            return saved.size() + failed.size() + abandoned.size();
+        }
+
+        public List<PlayerServers> unsaved() {
+            List<PlayerServers> unsaved = new ArrayList<>(failed);
+            unsaved.addAll(abandoned);
+            return unsaved;
+        }
+    }
+
+    private StorageFlusher() {
+    }
+
+    /**
+     * Save the players, waiting no longer than the deadline
+     *
+     * @param storage Where to save them
+     * @param players The players to save
+     * @param deadlineNanos The {@link System#nanoTime()} to give up at
+     * @return What was saved and what wasn't
+     */
+    public static Result flush(AbstractStorageManager storage, List<PlayerServers> players, long deadlineNanos) {
+        long start = System.nanoTime();
+
+        List<List<PlayerServers>> batches = new ArrayList<>();
+        for (int i = 0; i < players.size(); i += BATCH_SIZE) {
+            batches.add(players.subList(i, Math.min(i + BATCH_SIZE, players.size())));
+        }
+
+        int threads = Math.max(1, Math.min(batches.size(), Math.min(storage.maxConcurrentBatches(), Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()))));
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "GeyserConnect Shutdown Flush #" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<List<PlayerServers>>> futures = new ArrayList<>(batches.size());
+        for (List<PlayerServers> batch : batches) {
+            futures.add(executor.submit(() -> storage.saveServers(batch)));
+        }
+
+        List<PlayerServers> saved = new ArrayList<>();
+        List<PlayerServers> failed = new ArrayList<>();
+        List<PlayerServers> abandoned = new ArrayList<>();
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                List<PlayerServers> batch = batches.get(i);
+                try {
+                    List<PlayerServers> batchFailed = futures.get(i).get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    for (PlayerServers player : batch) {
+                        (batchFailed.contains(player) ? failed : saved).add(player);
+                    }
+                } catch (ExecutionException e) {
+                    failed.addAll(batch);
+                } catch (TimeoutException e) {
+                    abandoned.addAll(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    abandoned.addAll(batch);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new Result(saved, failed, abandoned, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.transfer;
+
+import io.netty.channel.EventLoop;
+import org.cloudburstmc.protocol.bedrock.packet.TransferPacket;
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.utils.Utils;
+import org.geysermc.geyser.api.network.AuthType;
+import org.geysermc.geyser.session.GeyserSession;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfers a set of players to one or more servers at a limited rate, so the targets
+ * aren't hit by every player logging in at once.
+ * <p>
+ * Each tick takes the next few players, splits them by event loop and sends each
+ * group its transfer packets from its own event loop.
+ */
+public class TransferJob {
+    private static final long TICK_MILLIS = 100;
+
+    private final List<TransferTarget> targets;
+    private final boolean passAsVhost;
+    private final int playersPerSecond;
+    private final double perTick;
+    // Taken from by the scheduler thread, and emptied by whoever cancels
+    private final Queue<GeyserSession> pending;
+    private final int total;
+
+    // Smooth weighted round robin state, only used from the scheduler thread
+    private final int[] currentWeights;
+    private final int totalWeight;
+    private double allowance;
+
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger processed = new AtomicInteger();
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile ScheduledFuture<?> future;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    /**
+     * @param sessions The players to transfer
+     * @param targets The servers to transfer them to
+     * @param passAsVhost If the players current server should be passed to the target as a virtual host
+     * @param playersPerSecond How many players to transfer each second
+     */
+    public TransferJob(List<GeyserSession> sessions, List<TransferTarget> targets, boolean passAsVhost, int playersPerSecond) {
+        this.targets = List.copyOf(targets);
+        this.passAsVhost = passAsVhost;
+        this.playersPerSecond = Math.max(1, playersPerSecond);
+        this.perTick = this.playersPerSecond * TICK_MILLIS / 1000D;
+        this.pending = new ArrayDeque<>(sessions);
+        this.total = sessions.size();
+
+        this.currentWeights = new int[targets.size()];
+        this.totalWeight = targets.stream().mapToInt(TransferTarget::weight).sum();
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        if (total == 0) {
+            finished = true;
+            return;
+        }
+
+        future = scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        stop();
+
+        // Nobody still waiting will be sent now, players already handed to their event loop are skipped there
+        synchronized (pending) {
+            while (!pending.isEmpty()) {
+                pending.poll();
+                skipped.incrementAndGet();
+                processed();
+            }
+        }
+    }
+
+    private void tick() {
+        Map<EventLoop, List<Transfer>> batches = new HashMap<>();
+        synchronized (pending) {
+            if (cancelled) {
+                return;
+            }
+
+            // Carry over fractions so low rates still move players
+            allowance += perTick;
+            int count = (int) allowance;
+            allowance -= count;
+
+            while (count > 0 && !pending.isEmpty()) {
+                GeyserSession session = pending.poll();
+                if (session.isClosed()) {
+                    skipped.incrementAndGet();
+                    processed();
+                    continue;
+                }
+
+                batches.computeIfAbsent(session.getEventLoop(), eventLoop -> new ArrayList<>()).add(new Transfer(session, nextTarget()));
+                count--;
+            }
+
+            if (pending.isEmpty()) {
+                stop();
+            }
+        }
+
+        for (Map.Entry<EventLoop, List<Transfer>> batch : batches.entrySet()) {
+            batch.getKey().execute(() -> {
+                for (Transfer transfer : batch.getValue()) {
+                    send(transfer);
+                }
+            });
+        }
+    }
+
+    // Finished once every player has been sent or skipped, not when the last one is handed to its event loop
+    private void processed() {
+        if (processed.incrementAndGet() == total) {
+            finished = true;
+            GeyserConnect.instance().logger().info("Transfer finished: " + status());
+        }
+    }
+
+    /**
+     * Pick the next target, spreading players between them by weight
+     */
+    private TransferTarget nextTarget() {
+        int best = 0;
+        for (int i = 0; i < currentWeights.length; i++) {
+            currentWeights[i] += targets.get(i).weight();
+            if (currentWeights[i] > currentWeights[best]) {
+                best = i;
+            }
+        }
+
+        currentWeights[best] -= totalWeight;
+        return targets.get(best);
+    }
+
+    private void send(Transfer transfer) {
+        GeyserSession session = transfer.session();
+        if (cancelled || session.isClosed()) {
+            skipped.incrementAndGet();
+            processed();
+            return;
+        }
+
+        TransferTarget target = transfer.target();
+        String address = target.address();
+
+        // If we are passing with a vhost construct the vhost
+        if (passAsVhost) {
+            address = session.remoteServer().address();
+            address += "._p" + session.remoteServer().port();
+            if (session.remoteServer().authType() == AuthType.OFFLINE) {
+                address += "._o";
+            }
+            address += "." + target.address();
+        }
+
+        GeyserConnect.instance().logger().debug("Sending " + Utils.displayName(session) + " to " + address + (target.port() != TransferTarget.DEFAULT_PORT ? ":" + target.port() : ""));
+
+        TransferPacket transferPacket = new TransferPacket();
+        transferPacket.setAddress(address);
+        transferPacket.setPort(target.port());
+        session.sendUpstreamPacket(transferPacket);
+
+        sent.incrementAndGet();
+        processed();
+    }
+
+    private void stop() {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * @return If the job is still sending players, it can still be finishing after a cancel
+     */
+    public boolean running() {
+        return !cancelled && !finished;
+    }
+
+    /**
+     * @return How many players are transferred each second, after clamping what was asked for
+     */
+    public int playersPerSecond() {
+        return playersPerSecond;
+    }
+
+    public String status() {
+        long seconds = (System.currentTimeMillis() - startTime) / 1000;
+        return (cancelled ? "cancelled, " : finished ? "done, " : "running, ")
+            + sent.get() + "/" + total + " sent, "
+            + skipped.get() + " skipped, "
+            + seconds + "s elapsed, targets: " + targets;
+    }
+
+    private record Transfer(GeyserSession session, TransferTarget target) {
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.transfer;
+
+/**
+ * A server players can be transferred to, with its share of the players
+ *
+ * @param address The address to send players to
+ * @param port The port to send players to
+ * @param weight How many players this target gets relative to the others
+ */
+public record TransferTarget(
+    String address,
+    int port,
+    int weight) {
+
+    public static final int DEFAULT_PORT = 19132;
+
+    /**
+     * Parse a target in the form {@code address[:port][*weight]}
+     *
+     * @param input The text to parse
+     * @return The parsed target
+     * @throws IllegalArgumentException If the port or weight isn't a valid number
+     */
+    public static TransferTarget parse(String input) {
+        String address = input.strip().toLowerCase();
+        int port = DEFAULT_PORT;
+        int weight = 1;
+
+        int weightIndex = address.indexOf('*');
+        if (weightIndex != -1) {
+            weight = parseNumber(address.substring(weightIndex + 1), "weight");
+            address = address.substring(0, weightIndex);
+        }
+
+        int portIndex = address.indexOf(':');
+        if (portIndex != -1) {
+            port = parseNumber(address.substring(portIndex + 1), "port");
+            address = address.substring(0, portIndex);
+        }
+
+        if (address.isEmpty()) {
+            throw new IllegalArgumentException("Missing address in '" + input + "'");
+        }
+
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be at least 1 in '" + input + "'");
+        }
+
+        return new TransferTarget(address, port, weight);
+    }
+
+    private static int parseNumber(String input, String name) {
+        try {
+            return Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + input);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return address + (port != DEFAULT_PORT ? ":" + port : "");
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ui;
+
+import org.cloudburstmc.protocol.bedrock.packet.UpdateAttributesPacket;
+import org.geysermc.extension.connect.PacketHandler;
+import org.geysermc.extension.connect.utils.WheelTimer;
+import org.geysermc.geyser.entity.attribute.GeyserAttributeType;
+import org.geysermc.geyser.session.GeyserSession;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Works around a client bug where form images don't load by sending an attribute update
+ * shortly after the client sends a network stack latency packet.
+ * <p>
+ * All sessions share one timer and each session has at most one update waiting.
+ */
+public class FormImageWorkaround {
+    private static final long DELAY_MILLIS = 500;
+
+    private static final WheelTimer TIMER = new WheelTimer("GeyserConnect Form Image Timer", 50, 64);
+    private static final UpdateAttributesPacket UPDATE_ATTRIBUTES_PACKET = createPacket();
+
+    private static final LongAdder fired = new LongAdder();
+    private static final LongAdder coalesced = new LongAdder();
+
+    private final GeyserSession session;
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    public FormImageWorkaround(GeyserSession session) {
+        this.session = session;
+    }
+
+    private static UpdateAttributesPacket createPacket() {
+        // Shared between all sessions so must never be changed after this
+        UpdateAttributesPacket updateAttributesPacket = new UpdateAttributesPacket();
+        updateAttributesPacket.setRuntimeEntityId(1);
+        updateAttributesPacket.setAttributes(Collections.singletonList(GeyserAttributeType.EXPERIENCE_LEVEL.getAttribute(0f)));
+        return updateAttributesPacket;
+    }
+
+    /**
+     * Schedule the attribute update unless there is already one waiting for this session
+     */
+    public void schedule() {
+        if (!pending.compareAndSet(false, true)) {
+            coalesced.increment();
+            return;
+        }
+
+        TIMER.schedule(this::send, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void send() {
+        pending.set(false);
+
+        // Only needed while they are looking at our forms
+        if (session.isClosed() || !(session.getUpstream().getSession().getPacketHandler() instanceof PacketHandler)) {
+            return;
+        }
+
+        session.sendUpstreamPacket(UPDATE_ATTRIBUTES_PACKET);
+        fired.increment();
+    }
+
+    /**
+     * Stop the timer thread, when GeyserConnect is shutting down
+     */
+    public static void shutdown() {
+        TIMER.shutdown();
+    }
+
+    /**
+     * @return How many times the attribute update has been sent
+     */
+    public static long firedCount() {
+        return fired.sum();
+    }
+
+    /**
+     * @return How many times a request was merged into an update that was already waiting
+     */
+    public static long coalescedCount() {
+        return coalesced.sum();
+    }
+}
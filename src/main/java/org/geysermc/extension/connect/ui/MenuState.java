@@ -0,0 +1,576 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ui;
+
+import org.geysermc.cumulus.form.CustomForm;
+import org.geysermc.cumulus.form.Form;
+import org.geysermc.cumulus.form.ModalForm;
+import org.geysermc.cumulus.form.SimpleForm;
+import org.geysermc.cumulus.response.CustomFormResponse;
+import org.geysermc.cumulus.response.FormResponse;
+import org.geysermc.cumulus.response.ModalFormResponse;
+import org.geysermc.cumulus.response.SimpleFormResponse;
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.language.Language;
+import org.geysermc.extension.connect.metrics.Metrics;
+import org.geysermc.extension.connect.metrics.SessionTrace;
+import org.geysermc.extension.connect.metrics.SessionTraces;
+import org.geysermc.extension.connect.utils.Server;
+import org.geysermc.extension.connect.utils.ServerCategory;
+import org.geysermc.extension.connect.utils.ServerManager;
+import org.geysermc.extension.connect.utils.Utils;
+
+import java.util.List;
+
+/**
+ * The menu as a table of screens shared by every player. Each screen builds its form from the
+ * little a {@link UIHandler} remembers about the player and decides where a response goes next,
+ * so sending a form doesn't create any handlers or hold on to anything for the response.
+ */
+public enum MenuState {
+    NOTICE {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            return CustomForm.builder()
+                .title(lang.get("ui.title.notice"))
+                .label(menu.takeNotice())
+                .resultHandler(menu.customRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            menu.show(menu.afterNotice());
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(menu.afterNotice());
+        }
+    },
+
+    MAIN {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            menu.clearSearch();
+
+            SimpleForm.Builder mainMenu = SimpleForm.builder()
+                .title(lang.get("ui.title.main_menu"))
+                .button(lang.get("ui.button.official_servers"))
+                .button(lang.get("ui.button.geyser_servers"))
+                .button(lang.get("ui.button.search_servers"));
+
+            // Add a buttons for custom servers
+            if (customServers()) {
+                mainMenu.button(lang.get("ui.button.custom_servers"));
+                mainMenu.button(lang.get("ui.button.direct_connect"));
+            }
+
+            SessionTraces.mark(menu.session(), SessionTrace.Phase.MENU_SHOWN);
+            return mainMenu
+                .button(lang.get("ui.button.disconnect"))
+                .resultHandler(menu.simpleRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            int clicked = ((SimpleFormResponse) response).clickedButtonId();
+            MenuState[] buttons = customServers() ? MAIN_BUTTONS_CUSTOM : MAIN_BUTTONS;
+            if (clicked < 0 || clicked >= buttons.length || buttons[clicked] == null) {
+                menu.session().disconnect("disconnectionScreen.disconnected");
+                return;
+            }
+
+            ServerCategory category = MAIN_CATEGORIES[clicked];
+            if (category != null) {
+                menu.showServers(category, 0);
+            } else {
+                menu.show(buttons[clicked]);
+            }
+        }
+
+        @Override
+        void invalid(UIHandler menu) {
+            menu.session().disconnect("disconnectionScreen.disconnected");
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(MAIN);
+        }
+
+        private boolean customServers() {
+            return GeyserConnect.instance().config().customServers().enabled();
+        }
+    },
+
+    SERVERS {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            ServerCategory category = menu.category();
+
+            ServerPage serverPage;
+            if (category == ServerCategory.CUSTOM) {
+                serverPage = ServerPages.page(ServerManager.getServers(menu.session()), menu.page());
+            } else {
+                serverPage = ServerPages.page(category, menu.page());
+            }
+            menu.shown(serverPage);
+
+            SimpleForm.Builder serversMenu = SimpleForm.builder()
+                .title(lang.getMessage("ui.title.servers", category.title() + " Servers"));
+
+            if (serverPage.pageCount() > 1) {
+                serversMenu.content(lang.getMessage("ui.content.page", serverPage.pageNumber(), serverPage.pageCount()));
+            }
+
+            ServerListButtons.add(serversMenu, serverPage, lang.get("ui.button.previous_page"), lang.get("ui.button.next_page"),
+                category == ServerCategory.CUSTOM ? lang.get("ui.button.edit_servers") : null, lang.get("ui.button.back"));
+
+            // Get a head start on looking up the servers they are likely to pick
+            GeyserConnect.instance().speculativeWarmup().onMenuOpen(menu.session(), serverPage.servers());
+
+            return serversMenu
+                .resultHandler(menu.simpleRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            ServerPage serverPage = menu.shown();
+            int action = ServerListButtons.action(serverPage, menu.category() == ServerCategory.CUSTOM, ((SimpleFormResponse) response).clickedButtonId());
+            switch (action) {
+                case ServerListButtons.PREVIOUS -> menu.showServers(menu.category(), serverPage.page() - 1);
+                case ServerListButtons.NEXT -> menu.showServers(menu.category(), serverPage.page() + 1);
+                case ServerListButtons.EXTRA -> menu.show(EDIT_SERVERS);
+                case ServerListButtons.BACK -> menu.show(MAIN);
+                case ServerListButtons.NONE -> invalid(menu);
+                default -> Utils.sendToServer(menu.session(), menu.originalPacketHandler(), serverPage.servers().get(action));
+            }
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(MAIN);
+        }
+    },
+
+    SEARCH {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            return CustomForm.builder()
+                .title(lang.get("ui.title.search_servers"))
+                .input(lang.get("ui.label.search"), "The Hive")
+                .resultHandler(menu.customRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            String query = ((CustomFormResponse) response).asInput(0);
+            if (query == null || query.isBlank()) {
+                menu.show(MAIN);
+                return;
+            }
+
+            // Nobody's server name is this long, so don't search with more than we need
+            if (query.length() > MAX_QUERY_LENGTH) {
+                query = query.substring(0, MAX_QUERY_LENGTH);
+            }
+
+            menu.search(query, GeyserConnect.instance().serverDirectory().search(query, SEARCH_LIMIT));
+            menu.show(SEARCH_RESULTS);
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(MAIN);
+        }
+    },
+
+    SEARCH_RESULTS {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            List<Server> results = menu.results();
+            ServerPage serverPage = ServerPages.page(results, menu.page());
+            menu.shown(serverPage);
+
+            SimpleForm.Builder resultsMenu = SimpleForm.builder()
+                .title(lang.get("ui.title.search_results"));
+
+            if (results.isEmpty()) {
+                resultsMenu.content(lang.getMessage("ui.content.no_results", menu.query()));
+            } else if (serverPage.pageCount() > 1) {
+                resultsMenu.content(lang.getMessage("ui.content.page", serverPage.pageNumber(), serverPage.pageCount()));
+            }
+
+            ServerListButtons.add(resultsMenu, serverPage, lang.get("ui.button.previous_page"), lang.get("ui.button.next_page"),
+                lang.get("ui.button.search_again"), lang.get("ui.button.back"));
+
+            return resultsMenu
+                .resultHandler(menu.simpleRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            ServerPage serverPage = menu.shown();
+            int action = ServerListButtons.action(serverPage, true, ((SimpleFormResponse) response).clickedButtonId());
+            switch (action) {
+                case ServerListButtons.PREVIOUS -> menu.showPage(SEARCH_RESULTS, serverPage.page() - 1);
+                case ServerListButtons.NEXT -> menu.showPage(SEARCH_RESULTS, serverPage.page() + 1);
+                case ServerListButtons.EXTRA -> menu.show(SEARCH);
+                case ServerListButtons.BACK -> menu.show(MAIN);
+                case ServerListButtons.NONE -> invalid(menu);
+                default -> Utils.sendToServer(menu.session(), menu.originalPacketHandler(), serverPage.servers().get(action));
+            }
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(MAIN);
+        }
+    },
+
+    EDIT_SERVERS {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            ServerPage serverPage = ServerPages.page(ServerManager.getServers(menu.session()), menu.editServersPage());
+            menu.editServersPage(serverPage.page());
+            menu.shown(serverPage);
+
+            SimpleForm.Builder editServersMenu = SimpleForm.builder()
+                .title(lang.get("ui.title.edit_servers"));
+
+            if (serverPage.pageCount() > 1) {
+                editServersMenu.content(lang.get("ui.content.edit_servers") + "\n" + lang.getMessage("ui.content.page", serverPage.pageNumber(), serverPage.pageCount()));
+            } else {
+                editServersMenu.content(lang.get("ui.content.edit_servers"));
+            }
+
+            ServerListButtons.add(editServersMenu, serverPage, lang.get("ui.button.previous_page"), lang.get("ui.button.next_page"),
+                lang.get("ui.button.add_server"), lang.get("ui.button.back"));
+
+            return editServersMenu
+                .resultHandler(menu.simpleRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            ServerPage serverPage = menu.shown();
+            int action = ServerListButtons.action(serverPage, true, ((SimpleFormResponse) response).clickedButtonId());
+            switch (action) {
+                case ServerListButtons.PREVIOUS -> {
+                    menu.editServersPage(serverPage.page() - 1);
+                    menu.show(EDIT_SERVERS);
+                }
+                case ServerListButtons.NEXT -> {
+                    menu.editServersPage(serverPage.page() + 1);
+                    menu.show(EDIT_SERVERS);
+                }
+                case ServerListButtons.EXTRA -> menu.show(ADD_SERVER);
+                case ServerListButtons.BACK -> menu.showServers(ServerCategory.CUSTOM, 0);
+                case ServerListButtons.NONE -> invalid(menu);
+                default -> {
+                    menu.select(ServerManager.getServerIndex(menu.session(), serverPage.servers().get(action)));
+                    menu.show(SERVER_OPTIONS);
+                }
+            }
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.showServers(ServerCategory.CUSTOM, 0);
+        }
+    },
+
+    ADD_SERVER {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            int max = maxServers();
+            if (max > 0 && ServerManager.getServers(menu.session()).size() >= max) {
+                // Only opening the screen, nothing was refused yet
+                menu.notice(lang.getMessage("ui.content.server_limit", max), EDIT_SERVERS);
+                return null;
+            }
+
+            return CustomForm.builder()
+                .title(lang.get("ui.title.add_server"))
+                .input(lang.get("ui.label.ip"), "play.cubecraft.net")
+                .input(lang.get("ui.label.port"), "25565", "25565")
+                .toggle(lang.get("ui.label.online_mode"), true)
+                .toggle(lang.get("ui.label.bedrock_server"), false)
+                .resultHandler(menu.customRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            Server server = readServer(menu, (CustomFormResponse) response, ADD_SERVER);
+            if (server == null) {
+                return;
+            }
+
+            if (!menu.budget().tryEdit()) {
+                menu.notice(menu.language().get("ui.content.too_fast"), EDIT_SERVERS);
+                return;
+            }
+
+            int max = maxServers();
+            if (!ServerManager.addServer(menu.session(), server, max)) {
+                menu.budget().reject(Metrics.Rejection.SERVER_LIMIT);
+                menu.notice(menu.language().getMessage("ui.content.server_limit", max), EDIT_SERVERS);
+                return;
+            }
+            menu.show(EDIT_SERVERS);
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(EDIT_SERVERS);
+        }
+
+        private int maxServers() {
+            return GeyserConnect.instance().config().customServers().max();
+        }
+    },
+
+    SERVER_OPTIONS {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            Server server = menu.selectedServer();
+            if (server == null) {
+                menu.show(EDIT_SERVERS);
+                return null;
+            }
+
+            return SimpleForm.builder()
+                .title(lang.get("ui.title.server_options"))
+                .content(server.title())
+                .button(lang.get("ui.button.edit_server"))
+                .button(lang.get("ui.button.delete_server"))
+                .button(lang.get("ui.button.back"))
+                .resultHandler(menu.simpleRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            int clicked = ((SimpleFormResponse) response).clickedButtonId();
+            if (clicked < 0 || clicked >= SERVER_OPTIONS_BUTTONS.length) {
+                invalid(menu);
+                return;
+            }
+
+            menu.show(SERVER_OPTIONS_BUTTONS[clicked]);
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(EDIT_SERVERS);
+        }
+    },
+
+    EDIT_SERVER {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            Server server = menu.selectedServer();
+            if (server == null) {
+                menu.show(EDIT_SERVERS);
+                return null;
+            }
+
+            return CustomForm.builder()
+                .title(lang.get("ui.title.edit_server"))
+                .input(lang.get("ui.label.ip"), server.address(), server.address())
+                .input(lang.get("ui.label.port"), String.valueOf(server.port()), String.valueOf(server.port()))
+                .toggle(lang.get("ui.label.online_mode"), server.online())
+                .toggle(lang.get("ui.label.bedrock_server"), server.bedrock())
+                .resultHandler(menu.customRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            Server server = readServer(menu, (CustomFormResponse) response, EDIT_SERVER);
+            if (server == null) {
+                return;
+            }
+
+            if (!menu.budget().tryEdit()) {
+                menu.notice(menu.language().get("ui.content.too_fast"), SERVER_OPTIONS);
+                return;
+            }
+
+            if (menu.selectedServer() != null) {
+                ServerManager.updateServer(menu.session(), menu.selected(), server);
+            }
+            menu.show(SERVER_OPTIONS);
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(SERVER_OPTIONS);
+        }
+    },
+
+    DELETE_SERVER {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            Server server = menu.selectedServer();
+            if (server == null) {
+                menu.show(EDIT_SERVERS);
+                return null;
+            }
+
+            return ModalForm.builder()
+                .title(lang.get("ui.title.delete_server"))
+                .content(lang.getMessage("ui.content.delete_server", server.title()))
+                .button1(lang.get("ui.button.yes"))
+                .button2(lang.get("ui.button.no"))
+                .resultHandler(menu.modalRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            if (((ModalFormResponse) response).clickedButtonId() == 0) {
+                if (!menu.budget().tryEdit()) {
+                    menu.notice(menu.language().get("ui.content.too_fast"), SERVER_OPTIONS);
+                    return;
+                }
+
+                Server server = menu.selectedServer();
+                if (server != null) {
+                    ServerManager.removeServer(menu.session(), server);
+                }
+                menu.select(-1);
+            }
+            menu.show(EDIT_SERVERS);
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(SERVER_OPTIONS);
+        }
+    },
+
+    DIRECT_CONNECT {
+        @Override
+        Form build(UIHandler menu, Language lang) {
+            return CustomForm.builder()
+                .title(lang.get("ui.title.direct_connect"))
+                .input(lang.get("ui.label.ip"), "play.cubecraft.net")
+                .input(lang.get("ui.label.port"), "25565", "25565")
+                .toggle(lang.get("ui.label.online_mode"), true)
+                .toggle(lang.get("ui.label.bedrock_server"), false)
+                .resultHandler(menu.customRouter())
+                .build();
+        }
+
+        @Override
+        void valid(UIHandler menu, FormResponse response) {
+            Server server = readServer(menu, (CustomFormResponse) response, DIRECT_CONNECT);
+            if (server != null) {
+                Utils.sendToServer(menu.session(), menu.originalPacketHandler(), server, Metrics.Transfer.DIRECT);
+            }
+        }
+
+        @Override
+        void closed(UIHandler menu) {
+            menu.show(MAIN);
+        }
+    };
+
+    private static final int SEARCH_LIMIT = 100;
+    private static final int MAX_QUERY_LENGTH = 64;
+
+    // Where each main menu button goes, the custom servers buttons only exist when they are enabled
+    private static final MenuState[] MAIN_BUTTONS = {SERVERS, SERVERS, SEARCH};
+    private static final MenuState[] MAIN_BUTTONS_CUSTOM = {SERVERS, SERVERS, SEARCH, SERVERS, DIRECT_CONNECT};
+    private static final ServerCategory[] MAIN_CATEGORIES = {ServerCategory.OFFICIAL, ServerCategory.GEYSER, null, ServerCategory.CUSTOM, null};
+
+    private static final MenuState[] SERVER_OPTIONS_BUTTONS = {EDIT_SERVER, DELETE_SERVER, EDIT_SERVERS};
+
+    /**
+     * Build the form for this screen
+     *
+     * @param menu The player's menu
+     * @param lang The player's language
+     * @return The form, or null if the screen sent the player somewhere else instead
+     */
+    abstract Form build(UIHandler menu, Language lang);
+
+    /**
+     * Handle the player answering this screen
+     *
+     * @param menu The player's menu
+     * @param response Their answer
+     */
+    abstract void valid(UIHandler menu, FormResponse response);
+
+    /**
+     * Handle the player closing this screen
+     *
+     * @param menu The player's menu
+     */
+    abstract void closed(UIHandler menu);
+
+    /**
+     * Handle the client sending an answer that doesn't fit the form
+     *
+     * @param menu The player's menu
+     */
+    void invalid(UIHandler menu) {
+        closed(menu);
+    }
+
+    /**
+     * Read the server a player typed into the add, edit or direct connect form
+     *
+     * @param menu The player's menu
+     * @param response Their answer
+     * @param retry Where to send them if it isn't valid
+     * @return The server, or null if it wasn't valid
+     */
+    private static Server readServer(UIHandler menu, CustomFormResponse response, MenuState retry) {
+        String ip = response.asInput(0);
+        int port = menu.budget().port(response.asInput(1));
+        boolean onlineMode = response.asToggle(2);
+        boolean geyserServer = response.asToggle(3);
+
+        if (!menu.budget().validAddress(ip) || port == -1) {
+            // One refused change however many fields were wrong
+            menu.budget().reject(Metrics.Rejection.INVALID_FIELD);
+            menu.notice(menu.language().get("ui.content.invalid_server"), retry);
+            return null;
+        }
+
+        return new Server(ip, port, onlineMode, geyserServer, null, null, ServerCategory.CUSTOM);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ui;
+
+import org.geysermc.cumulus.form.SimpleForm;
+import org.geysermc.extension.connect.utils.Server;
+
+/**
+ * The buttons of a page of a server list: the servers, then previous and next page if there are
+ * other pages, then an optional extra button, then back. Clicks are worked out again from the page
+ * so nothing needs to be kept between sending the form and the response.
+ */
+public final class ServerListButtons {
+    public static final int PREVIOUS = -1;
+    public static final int NEXT = -2;
+    public static final int EXTRA = -3;
+    public static final int BACK = -4;
+    public static final int NONE = -5;
+
+    private ServerListButtons() {
+    }
+
+    /**
+     * Add the buttons for a page to a form
+     *
+     * @param form The form
+     * @param page The page shown
+     * @param previous The previous page button text
+     * @param next The next page button text
+     * @param extra The extra button text, or null for none
+     * @param back The back button text
+     */
+    public static void add(SimpleForm.Builder form, ServerPage page, String previous, String next, String extra, String back) {
+        for (Server server : page.servers()) {
+            form.button(server.title(), server.formImage());
+        }
+
+        if (page.hasPrevious()) {
+            form.button(previous);
+        }
+
+        if (page.hasNext()) {
+            form.button(next);
+        }
+
+        if (extra != null) {
+            form.button(extra);
+        }
+
+        form.button(back);
+    }
+
+    /**
+     * Work out what a click on a page did
+     *
+     * @param page The page shown
+     * @param extra If the page has the extra button
+     * @param clicked The id of the button clicked
+     * @return The index of the server on the page, or one of the button constants
+     */
+    public static int action(ServerPage page, boolean extra, int clicked) {
+        if (clicked < 0) {
+            return NONE;
+        }
+
+        int servers = page.servers().size();
+        if (clicked < servers) {
+            return clicked;
+        }
+
+        int id = servers;
+        if (page.hasPrevious() && clicked == id++) {
+            return PREVIOUS;
+        }
+
+        if (page.hasNext() && clicked == id++) {
+            return NEXT;
+        }
+
+        if (extra && clicked == id++) {
+            return EXTRA;
+        }
+
+        return clicked == id ? BACK : NONE;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ui;
+
+import org.geysermc.extension.connect.utils.Server;
+
+import java.util.List;
+
+/**
+ * A single page of a server list
+ *
+ * @param servers The servers on this page
+ * @param page The index of this page, starting at 0
+ * @param pageCount The total number of pages in the list
+ */
+public record ServerPage(
+    List<Server> servers,
+    int page,
+    int pageCount) {
+
+    public boolean hasPrevious() {
+        return page > 0;
+    }
+
+    public boolean hasNext() {
+        return page < pageCount - 1;
+    }
+
+    public int pageNumber() {
+        return page + 1;
+    }
+
+    /**
+     * Get the number of pages needed to show the given amount of servers
+     *
+     * @param size The amount of servers
+     * @param pageSize The amount of servers on each page
+     * @return The number of pages, always at least 1
+     */
+    public static int pageCount(int size, int pageSize) {
+        return Math.max(1, (size + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Take a page from a list of servers, clamping the page index to the valid range
+     *
+     * @param servers The full list of servers
+     * @param page The page index wanted
+     * @param pageSize The amount of servers on each page
+     * @return The page
+     */
+    public static ServerPage of(List<Server> servers, int page, int pageSize) {
+        int pageCount = pageCount(servers.size(), pageSize);
+        page = Math.max(0, Math.min(page, pageCount - 1));
+
+        int from = page * pageSize;
+        int to = Math.min(from + pageSize, servers.size());
+
+        return new ServerPage(List.copyOf(servers.subList(from, to)), page, pageCount);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ui;
+
+import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.utils.Server;
+import org.geysermc.extension.connect.utils.ServerCategory;
+import org.geysermc.extension.connect.utils.ServerDirectory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lazily built and cached pages for the global server categories
+ */
+public class ServerPages {
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    private static final Map<ServerCategory, CategoryPages> cache = new EnumMap<>(ServerCategory.class);
+
+    public static int pageSize() {
+        int pageSize = GeyserConnect.instance().config().pageSize();
+        return pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Get a page of a global server category, building it if it hasn't been requested yet
+     *
+     * @param category The global category
+     * @param page The page index wanted
+     * @return The page
+     */
+    public static ServerPage page(ServerCategory category, int page) {
+        return pages(category).get(page);
+    }
+
+    /**
+     * Get a page of a servers list that isn't cached, such as a players custom servers
+     *
+     * @param servers The full list of servers
+     * @param page The page index wanted
+     * @return The page
+     */
+    public static ServerPage page(List<Server> servers, int page) {
+        return ServerPage.of(servers, page, pageSize());
+    }
+
+    private static synchronized CategoryPages pages(ServerCategory category) {
+        ServerDirectory source = GeyserConnect.instance().serverDirectory();
+        int pageSize = pageSize();
+
+        // Rebuild if the category or the page size has changed since we last built the pages,
+        // a reload keeps the same list for categories that didn't change
+        List<Server> servers = source.servers(category);
+        CategoryPages pages = cache.get(category);
+        if (pages == null || pages.servers != servers || pages.pageSize != pageSize) {
+            pages = new CategoryPages(servers, pageSize);
+            cache.put(category, pages);
+        }
+
+        return pages;
+    }
+
+    private static class CategoryPages {
+        private final List<Server> servers;
+        private final int pageSize;
+        private final AtomicReferenceArray<ServerPage> pages;
+
+        private CategoryPages(List<Server> servers, int pageSize) {
+            this.servers = servers;
+            this.pageSize = pageSize;
+            this.pages = new AtomicReferenceArray<>(ServerPage.pageCount(servers.size(), pageSize));
+        }
+
+        private ServerPage get(int page) {
+            page = Math.max(0, Math.min(page, pages.length() - 1));
+
+            ServerPage serverPage = pages.get(page);
+            if (serverPage == null) {
+                serverPage = ServerPage.of(servers, page, pageSize);
+                pages.compareAndSet(page, null, serverPage);
+            }
+
+            return serverPage;
+        }
+    }
+}
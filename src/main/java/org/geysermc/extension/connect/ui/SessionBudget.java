@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.ui;
+
+import org.geysermc.extension.connect.admission.TokenBucket;
+import org.geysermc.extension.connect.config.LimitsSection;
+import org.geysermc.extension.connect.metrics.Metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How much one player is allowed to ask of the menu, so a scripted client can't
+ * make everyone else pay for answering forms or saving servers
+ */
+public class SessionBudget {
+    public static final double DEFAULT_FORM_RESPONSES_PER_SECOND = 4;
+    public static final int DEFAULT_FORM_RESPONSE_BURST = 30;
+    public static final double DEFAULT_EDITS_PER_MINUTE = 10;
+    public static final int DEFAULT_EDIT_BURST = 5;
+    public static final int DEFAULT_MAX_ADDRESS_LENGTH = 253;
+    public static final int DEFAULT_MAX_REJECTIONS = 50;
+
+    // Refusals are forgiven at max rejections per this many seconds, so only a burst of them disconnects
+    private static final int REJECTION_WINDOW_SECONDS = 60;
+
+    private final TokenBucket formResponses;
+    private final TokenBucket edits;
+    private final int maxAddressLength;
+    private final TokenBucket rejectionAllowance;
+    private volatile boolean exhausted;
+
+    private final AtomicInteger rejections = new AtomicInteger();
+
+    public SessionBudget(LimitsSection section) {
+        double formResponsesPerSecond = section != null && section.formResponsesPerSecond() > 0 ? section.formResponsesPerSecond() : DEFAULT_FORM_RESPONSES_PER_SECOND;
+        int formResponseBurst = section != null && section.formResponseBurst() > 0 ? section.formResponseBurst() : DEFAULT_FORM_RESPONSE_BURST;
+        double editsPerMinute = section != null && section.editsPerMinute() > 0 ? section.editsPerMinute() : DEFAULT_EDITS_PER_MINUTE;
+        int editBurst = section != null && section.editBurst() > 0 ? section.editBurst() : DEFAULT_EDIT_BURST;
+
+        this.formResponses = new TokenBucket(formResponsesPerSecond, formResponseBurst);
+        this.edits = new TokenBucket(editsPerMinute / 60D, editBurst);
+        this.maxAddressLength = section != null && section.maxAddressLength() > 0 ? section.maxAddressLength() : DEFAULT_MAX_ADDRESS_LENGTH;
+        int maxRejections = section != null && section.maxRejections() > 0 ? section.maxRejections() : DEFAULT_MAX_REJECTIONS;
+        this.rejectionAllowance = new TokenBucket((double) maxRejections / REJECTION_WINDOW_SECONDS, maxRejections);
+    }
+
+    /**
+     * Take a token for answering a form
+     *
+     * @return 0 if the response can be handled now, otherwise how many nanoseconds until it can
+     */
+    public long formResponseDelay() {
+        return formResponses.tryAcquire() ? 0 : formResponses.nanosUntilToken();
+    }
+
+    /**
+     * Take a token for changing the player's custom servers
+     *
+     * @return If the change should be made
+     */
+    public boolean tryEdit() {
+        if (edits.tryAcquire()) {
+            return true;
+        }
+
+        reject(Metrics.Rejection.EDIT_RATE);
+        return false;
+    }
+
+    /**
+     * Check a server address a player typed in
+     *
+     * @param address The address
+     * @return If it can be used
+     */
+    public boolean validAddress(String address) {
+        return address != null && !address.isBlank() && address.length() <= maxAddressLength;
+    }
+
+    /**
+     * Read a port a player typed in
+     *
+     * @param input The port
+     * @return The port, or -1 if it isn't one
+     */
+    public int port(String input) {
+        // Anything longer can't be a port, so don't bother parsing it
+        if (input != null && !input.isEmpty() && input.length() <= 5) {
+            try {
+                int port = Integer.parseInt(input);
+                if (port > 0 && port <= 65535) {
+                    return port;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Count something the player wasn't allowed to do
+     *
+     * @param reason Why it wasn't allowed
+     */
+    public void reject(Metrics.Rejection reason) {
+        reason.increment();
+        rejections.incrementAndGet();
+        if (!rejectionAllowance.tryAcquire()) {
+            exhausted = true;
+        }
+    }
+
+    /**
+     * @return If the player has been refused so often in a short time they are most likely a script
+     */
+    public boolean exhausted() {
+        return exhausted;
+    }
+
+    /**
+     * @return How many times the player has been refused in total
+     */
+    public int rejections() {
+        return rejections.get();
+    }
+}
@@ -27,28 +27,117 @@ package org.geysermc.extension.connect.ui;
 
 import org.cloudburstmc.protocol.bedrock.packet.BedrockPacketHandler;
 import org.geysermc.extension.connect.GeyserConnect;
-import org.geysermc.extension.connect.language.LanguageManager;
+import org.geysermc.extension.connect.jfr.FormEvent;
+import org.geysermc.extension.connect.language.Language;
+import org.geysermc.extension.connect.metrics.Metrics;
+import org.geysermc.extension.connect.metrics.SessionTrace;
+import org.geysermc.extension.connect.metrics.SessionTraces;
 import org.geysermc.extension.connect.utils.Server;
 import org.geysermc.extension.connect.utils.ServerCategory;
 import org.geysermc.extension.connect.utils.ServerManager;
 import org.geysermc.extension.connect.utils.Utils;
 import org.geysermc.cumulus.form.CustomForm;
+import org.geysermc.cumulus.form.Form;
 import org.geysermc.cumulus.form.ModalForm;
 import org.geysermc.cumulus.form.SimpleForm;
+import org.geysermc.cumulus.response.CustomFormResponse;
+import org.geysermc.cumulus.response.FormResponse;
+import org.geysermc.cumulus.response.ModalFormResponse;
+import org.geysermc.cumulus.response.SimpleFormResponse;
+import org.geysermc.cumulus.response.result.FormResponseResult;
+import org.geysermc.cumulus.response.result.ValidFormResponseResult;
 import org.geysermc.geyser.session.GeyserSession;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.function.BiConsumer;
 
+/**
+ * A player's place in the menu. The screens themselves are shared in {@link MenuState},
+ * this only keeps which screen they are on and the few things the screens need to remember.
+ */
 public class UIHandler {
     private final GeyserSession session;
     private final BedrockPacketHandler originalPacketHandler;
-
-    public UIHandler(GeyserSession session, BedrockPacketHandler originalPacketHandler) {
+    private final SessionBudget budget;
+
+    // Every form sent to this player answers through these, so sending a form doesn't create a handler
+    private final BiConsumer<SimpleForm, FormResponseResult<SimpleFormResponse>> simpleRouter = this::route;
+    private final BiConsumer<CustomForm, FormResponseResult<CustomFormResponse>> customRouter = this::route;
+    private final BiConsumer<ModalForm, FormResponseResult<ModalFormResponse>> modalRouter = this::route;
+
+    private MenuState state;
+    private Form current;
+    private ServerCategory category = ServerCategory.OFFICIAL;
+    private int page;
+    private int editServersPage;
+    private ServerPage shown;
+    private int selected = -1;
+    private String query;
+    private List<Server> results;
+    private String notice;
+    private MenuState afterNotice = MenuState.MAIN;
+
+    private volatile long formSentAt;
+
+    public UIHandler(GeyserSession session, BedrockPacketHandler originalPacketHandler, SessionBudget budget) {
         this.session = session;
         this.originalPacketHandler = originalPacketHandler;
+        this.budget = budget;
+    }
+
+    private void sendForm(Form form, FormEvent event) {
+        Metrics.FORMS_SENT.increment();
+        formSentAt = System.nanoTime();
+        boolean sent = deliver(form);
+
+        if (event.shouldCommit()) {
+            event.formType = form.getClass().getSimpleName();
+            event.title = form.title();
+            event.player = session.bedrockUsername();
+            event.sent = sent;
+            event.commit();
+        }
+    }
+
+    /**
+     * Hand a form to the player's client
+     *
+     * @param form The form
+     * @return If it was sent
+     */
+    boolean deliver(Form form) {
+        return session.sendForm(form);
+    }
+
+    private void route(Form form, FormResponseResult<? extends FormResponse> result) {
+        // Only the last form we sent moves the player on
+        if (form != current) {
+            return;
+        }
+        current = null;
+
+        MenuState state = this.state;
+        if (result.isValid()) {
+            state.valid(this, ((ValidFormResponseResult<? extends FormResponse>) result).response());
+        } else if (result.isInvalid()) {
+            state.invalid(this);
+        } else {
+            state.closed(this);
+        }
+    }
+
+    /**
+     * Called when the player answers a form, to record how long they took
+     */
+    public void formResponded() {
+        long sentAt = formSentAt;
+        if (sentAt != 0) {
+            formSentAt = 0;
+            Metrics.FORM_RESPONSE.observeSince(sentAt);
+        }
     }
 
     public void initialiseSession() {
@@ -60,265 +149,151 @@ public class UIHandler {
         }
 
         if (!message.trim().isEmpty()) {
-            session.sendForm(CustomForm.builder()
-                .title("Notice")
-                .label(message)
-                .resultHandler((customForm, customFormResponseFormResponseResult) -> {
-                    sendMainMenu();
-                })
-                .build());
+            notice(message, MenuState.MAIN);
+            SessionTraces.mark(session, SessionTrace.Phase.WELCOME_SHOWN);
         } else {
-            sendMainMenu();
+            show(MenuState.MAIN);
         }
     }
 
-    public void sendMainMenu() {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        SimpleForm.Builder mainMenu = SimpleForm.builder()
-            .title(lang.get("ui.title.main_menu"))
-            .button(lang.get("ui.button.official_servers"))
-            .button(lang.get("ui.button.geyser_servers"));
-
-        // Add a buttons for custom servers
-        if (GeyserConnect.instance().config().customServers().enabled()) {
-            mainMenu.button(lang.get("ui.button.custom_servers"));
-            mainMenu.button(lang.get("ui.button.direct_connect"));
+    /**
+     * Send the player a screen
+     *
+     * @param state The screen
+     */
+    public void show(MenuState state) {
+        // Started before the build so the event covers building the form as well as sending it
+        FormEvent event = new FormEvent();
+        event.begin();
+        Form form = state.build(this, language());
+
+        // The screen may have sent them somewhere else instead
+        if (form != null) {
+            this.state = state;
+            this.current = form;
+            sendForm(form, event);
         }
+    }
 
-        mainMenu
-            .button(lang.get("ui.button.disconnect"))
-            .closedResultHandler(response -> {
-                sendMainMenu();
-            })
-            .invalidResultHandler(response -> {
-                session.disconnect("disconnectionScreen.disconnected");
-            })
-            .validResultHandler(response -> {
-                switch (response.clickedButtonId()) {
-                    case 0:
-                        sendServersMenu(ServerCategory.OFFICIAL);
-                        return;
-                    case 1:
-                        sendServersMenu(ServerCategory.GEYSER);
-                        return;
-                    default:
-                        if (GeyserConnect.instance().config().customServers().enabled()) {
-                            switch (response.clickedButtonId()) {
-                                case 2:
-                                    sendServersMenu(ServerCategory.CUSTOM);
-                                    return;
-                                case 3:
-                                    sendDirectConnectMenu();
-                                    return;
-                            }
-                        }
-                        break;
-                }
-
-                session.disconnect("disconnectionScreen.disconnected");
-            });
-
-        session.sendForm(mainMenu);
-    }
-
-    public void sendServersMenu(ServerCategory category) {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        SimpleForm.Builder serversMenu = SimpleForm.builder()
-            .title(lang.getMessage("ui.title.servers", category.title() + " Servers"));
-
-        List<Server> servers;
-        if (category == ServerCategory.CUSTOM) {
-            servers = ServerManager.getServers(session);
-        } else {
-            servers = Utils.getServers(category);
-        }
+    void showPage(MenuState state, int page) {
+        this.page = page;
+        show(state);
+    }
 
-        for (Server server : servers) {
-            serversMenu.button(server.title(), server.formImage());
-        }
+    void showServers(ServerCategory category, int page) {
+        this.category = category;
+        showPage(MenuState.SERVERS, page);
+    }
 
-        if (category == ServerCategory.CUSTOM) {
-            serversMenu.button(lang.get("ui.button.edit_servers"));
-        }
+    /**
+     * Tell the player something then carry on
+     *
+     * @param message What to tell them
+     * @param next Where to go after
+     */
+    void notice(String message, MenuState next) {
+        this.notice = message;
+        this.afterNotice = next;
+        show(MenuState.NOTICE);
+    }
 
-        serversMenu
-            .button(lang.get("ui.button.back"))
-            .closedOrInvalidResultHandler(response -> {
-                sendMainMenu();
-            })
-            .validResultHandler(response -> {
-                if (category == ServerCategory.CUSTOM) {
-                    if (response.clickedButtonId() == servers.size()) {
-                        sendEditServersMenu();
-                        return;
-                    } else if (response.clickedButtonId() == servers.size() + 1) {
-                        sendMainMenu();
-                        return;
-                    }
-                } else if (response.clickedButtonId() == servers.size()) {
-                    sendMainMenu();
-                    return;
-                }
-
-                Server server = servers.get(response.clickedButtonId());
-                Utils.sendToServer(session, originalPacketHandler, server);
-            });
-
-        session.sendForm(serversMenu);
-    }
-
-    public void sendEditServersMenu() {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        SimpleForm.Builder editServersMenu = SimpleForm.builder()
-            .title(lang.get("ui.title.edit_servers"))
-            .content(lang.get("ui.content.edit_servers"));
+    String takeNotice() {
+        String notice = this.notice;
+        this.notice = null;
+        return notice;
+    }
 
-        List<Server> servers = ServerManager.getServers(session);
+    MenuState afterNotice() {
+        return afterNotice;
+    }
 
-        for (Server server : servers) {
-            editServersMenu.button(server.title(), server.formImage());
-        }
+    void search(String query, List<Server> results) {
+        this.query = query;
+        this.results = results;
+        this.page = 0;
+    }
+
+    void clearSearch() {
+        this.query = null;
+        this.results = null;
+    }
+
+    String query() {
+        return query;
+    }
 
-        editServersMenu
-            .button(lang.get("ui.button.add_server"))
-            .button(lang.get("ui.button.back"))
-            .closedOrInvalidResultHandler(response -> {
-                sendServersMenu(ServerCategory.CUSTOM);
-            })
-            .validResultHandler(response -> {
-                if (response.clickedButtonId() == servers.size()) {
-                    sendAddServerMenu();
-                    return;
-                } else if (response.clickedButtonId() == servers.size() + 1) {
-                    sendServersMenu(ServerCategory.CUSTOM);
-                    return;
-                }
-
-                Server server = servers.get(response.clickedButtonId());
-                sendServerOptionsMenu(server);
-            });
-
-        session.sendForm(editServersMenu);
-    }
-
-    public void sendAddServerMenu() {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        session.sendForm(CustomForm.builder()
-            .title(lang.get("ui.title.add_server"))
-            .input(lang.get("ui.label.ip"), "play.cubecraft.net")
-            .input(lang.get("ui.label.port"), "25565", "25565")
-            .toggle(lang.get("ui.label.online_mode"), true)
-            .toggle(lang.get("ui.label.bedrock_server"), false)
-            .closedOrInvalidResultHandler(response -> {
-                sendEditServersMenu();
-            })
-            .validResultHandler(response -> {
-                String ip = response.asInput(0);
-                int port = Integer.parseInt(response.asInput(1));
-                boolean onlineMode = response.asToggle(2);
-                boolean geyserServer = response.asToggle(3);
-
-                Server server = new Server(ip, port, onlineMode, geyserServer, null, null, ServerCategory.CUSTOM);
-                ServerManager.addServer(session, server);
-                sendEditServersMenu();
-            }));
-    }
-
-    public void sendServerOptionsMenu(Server server) {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        session.sendForm(SimpleForm.builder()
-            .title(lang.get("ui.title.server_options"))
-            .content(server.title())
-            .button(lang.get("ui.button.edit_server"))
-            .button(lang.get("ui.button.delete_server"))
-            .button(lang.get("ui.button.back"))
-            .closedOrInvalidResultHandler(response -> {
-                sendEditServersMenu();
-            })
-            .validResultHandler(response -> {
-                switch (response.clickedButtonId()) {
-                    case 0:
-                        sendEditServerMenu(server);
-                        return;
-                    case 1:
-                        sendDeleteServerMenu(server);
-                        return;
-                    case 2:
-                        sendEditServersMenu();
-                        return;
-                }
-            }));
-    }
-
-    public void sendEditServerMenu(Server server) {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        int serverIndex = ServerManager.getServerIndex(session, server);
-        session.sendForm(CustomForm.builder()
-            .title(lang.get("ui.title.edit_server"))
-            .input(lang.get("ui.label.ip"), server.address(), server.address())
-            .input(lang.get("ui.label.port"), String.valueOf(server.port()), String.valueOf(server.port()))
-            .toggle(lang.get("ui.label.online_mode"), server.online())
-            .toggle(lang.get("ui.label.bedrock_server"), server.bedrock())
-            .closedOrInvalidResultHandler(response -> {
-                sendServerOptionsMenu(server);
-            })
-            .validResultHandler(response -> {
-                String ip = response.asInput(0);
-                int port = Integer.parseInt(response.asInput(1));
-                boolean onlineMode = response.asToggle(2);
-                boolean geyserServer = response.asToggle(3);
-
-                Server newServer = new Server(ip, port, onlineMode, geyserServer, null, null, ServerCategory.CUSTOM);
-                ServerManager.updateServer(session, serverIndex, newServer);
-                sendServerOptionsMenu(newServer);
-            }));
-    }
-
-    public void sendDeleteServerMenu(Server server) {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        session.sendForm(ModalForm.builder()
-            .title(lang.get("ui.title.delete_server"))
-            .content(lang.getMessage("ui.content.delete_server", server.title()))
-            .button1(lang.get("ui.button.yes"))
-            .button2(lang.get("ui.button.no"))
-            .closedOrInvalidResultHandler(response -> {
-                sendServerOptionsMenu(server);
-            })
-            .validResultHandler(response -> {
-                if (response.clickedButtonId() == 0) {
-                    ServerManager.removeServer(session, server);
-                }
-                sendEditServersMenu();
-            }));
-    }
-
-    public void sendDirectConnectMenu() {
-        LanguageManager lang = GeyserConnect.instance().languageManager();
-        
-        session.sendForm(CustomForm.builder()
-            .title(lang.get("ui.title.direct_connect"))
-            .input(lang.get("ui.label.ip"), "play.cubecraft.net")
-            .input(lang.get("ui.label.port"), "25565", "25565")
-            .toggle(lang.get("ui.label.online_mode"), true)
-            .toggle(lang.get("ui.label.bedrock_server"), false)
-            .closedOrInvalidResultHandler(response -> {
-                sendMainMenu();
-            })
-            .validResultHandler(response -> {
-                String ip = response.asInput(0);
-                int port = Integer.parseInt(response.asInput(1));
-                boolean onlineMode = response.asToggle(2);
-                boolean geyserServer = response.asToggle(3);
-
-                Server server = new Server(ip, port, onlineMode, geyserServer, null, null, ServerCategory.CUSTOM);
-                Utils.sendToServer(session, originalPacketHandler, server);
-            }));
+    List<Server> results() {
+        return results;
+    }
+
+    GeyserSession session() {
+        return session;
+    }
+
+    BedrockPacketHandler originalPacketHandler() {
+        return originalPacketHandler;
+    }
+
+    SessionBudget budget() {
+        return budget;
+    }
+
+    Language language() {
+        return GeyserConnect.instance().languageManager().language(session.locale());
+    }
+
+    BiConsumer<SimpleForm, FormResponseResult<SimpleFormResponse>> simpleRouter() {
+        return simpleRouter;
+    }
+
+    BiConsumer<CustomForm, FormResponseResult<CustomFormResponse>> customRouter() {
+        return customRouter;
+    }
+
+    BiConsumer<ModalForm, FormResponseResult<ModalFormResponse>> modalRouter() {
+        return modalRouter;
+    }
+
+    ServerCategory category() {
+        return category;
+    }
+
+    int page() {
+        return page;
+    }
+
+    int editServersPage() {
+        return editServersPage;
+    }
+
+    void editServersPage(int editServersPage) {
+        this.editServersPage = editServersPage;
+    }
+
+    /**
+     * @return The page of servers in the last list sent, so a click picks what the player saw
+     */
+    ServerPage shown() {
+        return shown;
+    }
+
+    void shown(ServerPage shown) {
+        this.shown = shown;
+    }
+
+    int selected() {
+        return selected;
+    }
+
+    void select(int selected) {
+        this.selected = selected;
+    }
+
+    /**
+     * @return The custom server the player is editing, or null if it has gone
+     */
+    Server selectedServer() {
+        List<Server> servers = ServerManager.getServers(session);
+        return servers != null && selected >= 0 && selected < servers.size() ? servers.get(selected) : null;
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.utils;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import org.geysermc.geyser.session.GeyserSession;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends the same thing to many sessions without holding up the caller.
+ * <p>
+ * Sessions are split by event loop and each loop works through its share in small batches,
+ * putting sessions whose connection is backed up to the back of its queue for a while.
+ */
+public class Broadcast {
+    private static final int BATCH_SIZE = 64;
+    private static final long RETRY_DELAY_MILLIS = 50;
+    private static final int MAX_RETRIES = 20;
+
+    private final Consumer<GeyserSession> sender;
+    private final int total;
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final CompletableFuture<Broadcast> future = new CompletableFuture<>();
+    private final AtomicInteger remainingLoops;
+    private final Map<EventLoop, List<GeyserSession>> sessionsByLoop = new HashMap<>();
+
+    private Broadcast(List<GeyserSession> sessions, Consumer<GeyserSession> sender) {
+        this.sender = sender;
+        this.total = sessions.size();
+
+        for (GeyserSession session : sessions) {
+            sessionsByLoop.computeIfAbsent(session.getEventLoop(), eventLoop -> new ArrayList<>()).add(session);
+        }
+        this.remainingLoops = new AtomicInteger(sessionsByLoop.size());
+    }
+
+    /**
+     * Start sending to the given sessions
+     *
+     * @param sessions The sessions to send to
+     * @param sender Sends the prebuilt message or form to one session, called on that session's event loop
+     * @return The running broadcast
+     */
+    public static Broadcast send(List<GeyserSession> sessions, Consumer<GeyserSession> sender) {
+        Broadcast broadcast = new Broadcast(sessions, sender);
+        broadcast.start();
+        return broadcast;
+    }
+
+    private void start() {
+        if (sessionsByLoop.isEmpty()) {
+            future.complete(this);
+            return;
+        }
+
+        for (Map.Entry<EventLoop, List<GeyserSession>> entry : sessionsByLoop.entrySet()) {
+            LoopQueue queue = new LoopQueue(entry.getKey(), entry.getValue());
+            entry.getKey().execute(queue::run);
+        }
+    }
+
+    public CompletableFuture<Broadcast> future() {
+        return future;
+    }
+
+    public int total() {
+        return total;
+    }
+
+    public int eventLoops() {
+        return sessionsByLoop.size();
+    }
+
+    public String summary() {
+        return delivered.get() + "/" + total + " delivered, "
+            + skipped.get() + " disconnected, "
+            + dropped.get() + " dropped as their connection was backed up";
+    }
+
+    private class LoopQueue {
+        private final EventLoop eventLoop;
+        private final Queue<Pending> queue = new ArrayDeque<>();
+        private final List<Pending> backedUp = new ArrayList<>();
+
+        private LoopQueue(EventLoop eventLoop, List<GeyserSession> sessions) {
+            this.eventLoop = eventLoop;
+            for (GeyserSession session : sessions) {
+                queue.add(new Pending(session, 0));
+            }
+        }
+
+        private void run() {
+            for (int i = 0; i < BATCH_SIZE && !queue.isEmpty(); i++) {
+                Pending pending = queue.poll();
+                GeyserSession session = pending.session();
+                if (session.isClosed()) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                Channel channel = session.getUpstream().getSession().getPeer().getChannel();
+                if (!channel.isWritable()) {
+                    // Try them again once everyone else on this loop has had theirs
+                    if (pending.attempts() < MAX_RETRIES) {
+                        backedUp.add(new Pending(session, pending.attempts() + 1));
+                    } else {
+                        dropped.incrementAndGet();
+                    }
+                    continue;
+                }
+
+                sender.accept(session);
+                delivered.incrementAndGet();
+            }
+
+            // Give the loop back between batches, waiting a little before retrying backed up connections
+            if (!queue.isEmpty()) {
+                eventLoop.execute(this::run);
+            } else if (!backedUp.isEmpty()) {
+                queue.addAll(backedUp);
+                backedUp.clear();
+                eventLoop.schedule(this::run, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } else if (remainingLoops.decrementAndGet() == 0) {
+                future.complete(Broadcast.this);
+            }
+        }
+    }
+
+    private record Pending(GeyserSession session, int attempts) {
+    }
+}
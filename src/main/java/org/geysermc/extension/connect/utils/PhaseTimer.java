@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times the phases of something like startup or a reload, which may run in parallel
+ */
+public class PhaseTimer {
+    private final long started = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    public void time(String phase, Runnable task) {
+        time(phase, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public <T> T time(String phase, Supplier<T> task) {
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    private synchronized void record(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    public synchronized long phaseMillis(String phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phases.getOrDefault(phase, 0L));
+    }
+
+    /**
+     * @return The wall clock time since the timer was created
+     */
+    public long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    /**
+     * @return Each phase and how long it took, in the order they finished
+     */
+    public synchronized String summary() {
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            parts.add(phase.getKey() + " " + TimeUnit.NANOSECONDS.toMillis(phase.getValue()) + "ms");
+        }
+        return String.join(", ", parts);
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.geysermc.geyser.api.extension.Extension;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The global server list, indexed by category and by name/address prefix
+ */
+public class ServerDirectory {
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory()).disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final List<Server> localServers;
+    private final List<Server> feedServers;
+    private final List<Server> servers;
+    private final Map<ServerCategory, List<Server>> categories;
+    private final Set<String> addresses = new HashSet<>();
+
+    // Sorted search keys with the server each key belongs to at the same index
+    private final String[] keys;
+    private final Server[] keyServers;
+
+    private ServerDirectory(List<Server> localServers, List<Server> feedServers, ServerDirectory previous) {
+        this.localServers = List.copyOf(localServers);
+        this.feedServers = List.copyOf(feedServers);
+
+        List<Server> servers = new ArrayList<>(localServers);
+        servers.addAll(feedServers);
+        this.servers = Collections.unmodifiableList(servers);
+        this.categories = new EnumMap<>(ServerCategory.class);
+
+        Map<ServerCategory, List<Server>> byCategory = new EnumMap<>(ServerCategory.class);
+        List<IndexEntry> entries = new ArrayList<>();
+        for (Server server : servers) {
+            if (!usable(server)) {
+                continue;
+            }
+
+            byCategory.computeIfAbsent(server.category(), category -> new ArrayList<>()).add(server);
+
+            addresses.add(server.address().toLowerCase(Locale.ROOT));
+
+            // Search is for the global servers, custom servers belong to the player that added them
+            if (server.category() != ServerCategory.CUSTOM) {
+                for (String key : searchKeys(server)) {
+                    entries.add(new IndexEntry(key, server));
+                }
+            }
+        }
+
+        for (ServerCategory category : ServerCategory.values()) {
+            List<Server> categoryServers = List.copyOf(byCategory.getOrDefault(category, List.of()));
+
+            // Keep the old list if nothing in the category changed so anything cached from it stays valid
+            if (previous != null && previous.servers(category).equals(categoryServers)) {
+                categoryServers = previous.servers(category);
+            }
+
+            categories.put(category, categoryServers);
+        }
+
+        entries.sort((a, b) -> a.key().compareTo(b.key()));
+        this.keys = new String[entries.size()];
+        this.keyServers = new Server[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            keys[i] = entries.get(i).key();
+            keyServers[i] = entries.get(i).server();
+        }
+    }
+
+    /**
+     * Build the directory from the servers in the config and, if set, a separate servers file
+     *
+     * @param extension The extension to resolve the servers file against and log with
+     * @param configServers The servers listed in the main config, may be null
+     * @param serversFile The name of the separate servers file, may be null or empty
+     * @return The built directory
+     */
+    public static ServerDirectory load(Extension extension, List<Server> configServers, String serversFile) {
+        return load(extension, configServers, serversFile, null);
+    }
+
+    /**
+     * Build the directory, reusing what hasn't changed from a previous directory
+     *
+     * @param extension The extension to resolve the servers file against and log with
+     * @param configServers The servers listed in the main config, may be null
+     * @param serversFile The name of the separate servers file, may be null or empty
+     * @param previous The directory being replaced, may be null, its feed servers are kept
+     * @return The built directory, or the previous directory if the servers are the same
+     */
+    public static ServerDirectory load(Extension extension, List<Server> configServers, String serversFile, ServerDirectory previous) {
+        List<Server> servers = new ArrayList<>();
+        if (configServers != null) {
+            servers.addAll(configServers);
+        }
+
+        if (serversFile != null && !serversFile.isEmpty()) {
+            File file = extension.dataFolder().resolve(serversFile).toFile();
+            if (file.exists()) {
+                try {
+                    int skipped = readServers(file, servers);
+                    if (skipped > 0) {
+                        extension.logger().warning("Skipped " + skipped + " servers without a category or address in " + serversFile);
+                    }
+                } catch (IOException e) {
+                    extension.logger().error("Failed to load servers from " + serversFile, e);
+                }
+            } else {
+                extension.logger().warning("Servers file not found: " + file);
+            }
+        }
+
+        if (previous != null && previous.localServers.equals(servers)) {
+            return previous;
+        }
+
+        ServerDirectory directory = new ServerDirectory(servers, previous != null ? previous.feedServers : List.of(), previous);
+        extension.logger().info("Loaded " + servers.size() + " global servers");
+        return directory;
+    }
+
+    /**
+     * Replace the servers from the remote feed, keeping the local servers
+     *
+     * @param feedServers The full list of servers from the feed
+     * @return The new directory, or this directory if the feed servers are the same
+     */
+    public ServerDirectory withFeed(List<Server> feedServers) {
+        if (this.feedServers.equals(feedServers)) {
+            return this;
+        }
+
+        return new ServerDirectory(localServers, feedServers, this);
+    }
+
+    /**
+     * Parse a JSON or YAML list of servers, dropping any without a category or address
+     *
+     * @param data The document
+     * @param yaml If the document is YAML rather than JSON
+     * @param servers The list to add the read servers to
+     * @return The number of servers skipped as they didn't have a category or address
+     * @throws IOException If the document couldn't be parsed
+     */
+    public static int readServers(byte[] data, boolean yaml, List<Server> servers) throws IOException {
+        int skipped = 0;
+        try (MappingIterator<Server> iterator = (yaml ? YAML_MAPPER : Utils.OBJECT_MAPPER).readerFor(Server.class).readValues(data)) {
+            while (iterator.hasNext()) {
+                Server server = iterator.next();
+                if (!usable(server)) {
+                    skipped++;
+                    continue;
+                }
+
+                servers.add(server);
+            }
+        }
+
+        return skipped;
+    }
+
+    /**
+     * Stream the servers from a JSON or YAML file containing a list of servers
+     * without holding the whole document in memory
+     *
+     * @param file The file to read
+     * @param servers The list to add the read servers to
+     * @return The number of servers skipped as they didn't have a category or address
+     * @throws IOException If the file couldn't be read or parsed
+     */
+    private static int readServers(File file, List<Server> servers) throws IOException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        ObjectMapper mapper = name.endsWith(".yml") || name.endsWith(".yaml") ? YAML_MAPPER : Utils.OBJECT_MAPPER;
+
+        int skipped = 0;
+        try (MappingIterator<Server> iterator = mapper.readerFor(Server.class).readValues(file)) {
+            while (iterator.hasNext()) {
+                Server server = iterator.next();
+                if (!usable(server)) {
+                    skipped++;
+                    continue;
+                }
+
+                servers.add(server);
+            }
+        }
+
+        return skipped;
+    }
+
+    /**
+     * @return If the server can be listed, it needs a category to be shown in and an address to be sent to
+     */
+    private static boolean usable(Server server) {
+        return server.category() != null && server.address() != null && !server.address().isBlank();
+    }
+
+    private static Set<String> searchKeys(Server server) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(server.address().toLowerCase(Locale.ROOT));
+
+        if (server.name() != null) {
+            String name = server.name().toLowerCase(Locale.ROOT);
+            keys.add(name);
+
+            // Also index each word of the name so 'network' finds 'Lifeboat Network'
+            for (String word : name.split("\\s+")) {
+                if (!word.isEmpty()) {
+                    keys.add(word);
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    public List<Server> servers() {
+        return servers;
+    }
+
+    public List<Server> feedServers() {
+        return feedServers;
+    }
+
+    public List<Server> servers(ServerCategory category) {
+        return categories.get(category);
+    }
+
+    /**
+     * Check if a global server uses the given address
+     *
+     * @param address The lower case address
+     * @return If there is a global server with the address
+     */
+    public boolean hasAddress(String address) {
+        return addresses.contains(address);
+    }
+
+    /**
+     * Find servers with a name, word of a name or address starting with the query
+     *
+     * @param query The text to search for
+     * @param limit The maximum number of results
+     * @return The matching servers in key order
+     */
+    public List<Server> search(String query, int limit) {
+        String prefix = query.strip().toLowerCase(Locale.ROOT);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+
+        // Find the first key that could start with the prefix
+        int index = Arrays.binarySearch(keys, prefix);
+        if (index < 0) {
+            index = -index - 1;
+        }
+
+        Set<Server> results = new LinkedHashSet<>();
+        for (int i = index; i < keys.length && results.size() < limit; i++) {
+            if (!keys[i].startsWith(prefix)) {
+                break;
+            }
+
+            results.add(keyServers[i]);
+        }
+
+        return List.copyOf(results);
+    }
+
+    private record IndexEntry(String key, Server server) {
+    }
+}
@@ -27,32 +27,101 @@ package org.geysermc.extension.connect.utils;
 
 import org.geysermc.api.connection.Connection;
 import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.metrics.Metrics;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ServerManager {
-    private static final Map<String, List<Server>> servers = new HashMap<>();
+    private static final Map<String, PlayerServers> servers = new ConcurrentHashMap<>();
+    private static final AtomicInteger saving = new AtomicInteger();
+    private static volatile boolean closed;
 
     public static void loadServers(Connection session) {
         GeyserConnect.instance().logger().debug("Loading servers for " + Utils.displayName(session));
-        servers.put(session.xuid(), GeyserConnect.instance().storageManager().loadServers(session));
+        long start = System.nanoTime();
+        setServers(session, GeyserConnect.instance().storageManager().loadServers(session));
+        Metrics.STORAGE_LOAD.observeSince(start);
+    }
+
+    static void setServers(Connection session, List<Server> sessionServers) {
+        servers.put(session.xuid(), new PlayerServers(session, sessionServers));
     }
 
     public static void unloadServers(Connection session) {
-        if (getServers(session) == null) return;
-        GeyserConnect.instance().logger().debug("Saving and unloading servers for " + Utils.displayName(session));
-        GeyserConnect.instance().storageManager().saveServers(session);
-        servers.remove(session.xuid());
+        PlayerServers playerServers = servers.get(session.xuid());
+        if (playerServers == null) return;
+
+        // Counted before checking closed, so shutdown either sees this save and waits for it or we see it closing
+        saving.incrementAndGet();
+        try {
+            if (closed) {
+                // Storage is closing and everything we had is saved while closing it
+                servers.remove(session.xuid());
+                return;
+            }
+
+            GeyserConnect.instance().logger().debug("Saving and unloading servers for " + Utils.displayName(session));
+            long start = System.nanoTime();
+            GeyserConnect.instance().storageManager().saveServers(session, playerServers.servers());
+            Metrics.STORAGE_SAVE.observeSince(start);
+            servers.remove(session.xuid());
+        } finally {
+            saving.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return Every player with their servers loaded, as they are right now
+     */
+    public static List<PlayerServers> snapshot() {
+        return List.copyOf(servers.values());
+    }
+
+    /**
+     * @return How many players are being saved by {@link #unloadServers} right now
+     */
+    public static int savesInProgress() {
+        return saving.get();
+    }
+
+    /**
+     * Stop saving players as they leave, once storage is about to be closed
+     */
+    public static void close() {
+        closed = true;
+    }
+
+    /**
+     * @return How many players have their servers loaded
+     */
+    public static int size() {
+        return servers.size();
     }
 
     public static List<Server> getServers(Connection session) {
-        return servers.get(session.xuid());
+        PlayerServers playerServers = servers.get(session.xuid());
+        return playerServers != null ? playerServers.servers() : null;
     }
 
-    public static void addServer(Connection session, Server server) {
-        servers.get(session.xuid()).add(server);
+    /**
+     * Add a server to a player's list, if there is room
+     *
+     * @param session The player
+     * @param server The server to add
+     * @param max The most servers a player can have, 0 for no limit
+     * @return If the server was added
+     */
+    public static boolean addServer(Connection session, Server server, int max) {
+        List<Server> servers = getServers(session);
+        if (max > 0 && servers.size() >= max) {
+            return false;
+        }
+
+        servers.add(server);
+        return true;
     }
 
     public static void removeServer(Connection session, Server server) {
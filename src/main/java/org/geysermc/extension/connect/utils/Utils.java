@@ -32,6 +32,12 @@ import org.cloudburstmc.protocol.bedrock.packet.SetLocalPlayerAsInitializedPacke
 import org.cloudburstmc.protocol.bedrock.packet.TransferPacket;
 import org.geysermc.api.connection.Connection;
 import org.geysermc.extension.connect.GeyserConnect;
+import org.geysermc.extension.connect.dns.DnsCache;
+import org.geysermc.extension.connect.jfr.TransferEvent;
+import org.geysermc.extension.connect.lobby.LobbyMode;
+import org.geysermc.extension.connect.metrics.Metrics;
+import org.geysermc.extension.connect.metrics.SessionTrace;
+import org.geysermc.extension.connect.metrics.SessionTraces;
 import org.geysermc.geyser.session.GeyserSession;
 
 import java.io.File;
@@ -50,7 +56,7 @@ public class Utils {
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
 
     public static List<Server> getServers(ServerCategory category) {
-        return GeyserConnect.instance().config().servers().stream().filter(server -> server.category() == category).toList();
+        return GeyserConnect.instance().serverDirectory().servers(category);
     }
 
     public static File fileOrCopiedFromResource(String fileName, String name) throws IOException {
@@ -80,13 +86,48 @@ public class Utils {
         return session.bedrockUsername() + " (" + session.xuid() + ")";
     }
 
+    /**
+     * Name where a player went for the stats, only global servers by name since players choose what everything else is called
+     */
+    private static String destination(Server server, Metrics.Transfer transfer) {
+        return switch (transfer) {
+            case DIRECT -> "Direct connect";
+            case VHOST -> "Virtual host";
+            case CLUSTER -> "Cluster";
+            default -> server.category() == null || server.category() == ServerCategory.CUSTOM ? "Custom servers" : server.title();
+        };
+    }
+
     public static void sendToServer(GeyserSession session, BedrockPacketHandler originalPacketHandler, Server server) {
+        sendToServer(session, originalPacketHandler, server, server.bedrock() ? Metrics.Transfer.BEDROCK : Metrics.Transfer.JAVA);
+    }
+
+    public static void sendToServer(GeyserSession session, BedrockPacketHandler originalPacketHandler, Server server, Metrics.Transfer transfer) {
+        transfer.increment();
+        Metrics.DESTINATIONS.record(destination(server, transfer));
+        SessionTraces.mark(session, SessionTrace.Phase.SELECTED);
+
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        event.type = transfer.name();
         GeyserConnect.instance().logger().info("Sending " + Utils.displayName(session) + " to " + server.title());
         GeyserConnect.instance().logger().debug(server.toString());
 
+        GeyserConnect.instance().speculativeWarmup().onHandOff(session, server);
+
+        // Geyser connects to the server as entered, the cache has only made sure its address is ready
+        DnsCache dnsCache = GeyserConnect.instance().dnsCache();
+        if (!server.bedrock() && dnsCache.enabled()) {
+            event.cached = dnsCache.onHandOff(server);
+        }
+
+        SessionTraces.mark(session, SessionTrace.Phase.RESOLVED);
+
         // Save the player's servers since we are changing packet handlers
         // (and they are going to disconnect if it is a bedrock server)
         ServerManager.unloadServers(session);
+        LobbyMode.finish(session);
+        Metrics.menuSessionEnded();
 
         // Restore the original packet handler
         session.getUpstream().getSession().setPacketHandler(originalPacketHandler);
@@ -113,6 +154,14 @@ public class Utils {
             initializedPacket.setRuntimeEntityId(session.getPlayerEntity().getGeyserId());
             originalPacketHandler.handle(initializedPacket);
         }
+
+        SessionTraces.finish(session);
+
+        if (event.shouldCommit()) {
+            event.player = session.bedrockUsername();
+            event.server = server.address() + ":" + server.port();
+            event.commit();
+        }
     }
 
     /**
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.utils;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed wheel timer for short, cheap delayed tasks.
+ * <p>
+ * Tasks are put in a bucket based on the tick they are due and a single thread
+ * runs each bucket as it comes round, so scheduling doesn't create a task in a
+ * shared scheduled executor. Tasks are run on the timer thread and should not block.
+ */
+public class WheelTimer {
+    private final long tickMillis;
+    private final Queue<Task>[] wheel;
+    private final int mask;
+    private final ScheduledExecutorService executor;
+
+    private volatile long tick;
+
+    /**
+     * @param name The name of the timer thread
+     * @param tickMillis How often the wheel moves, the precision of the timer
+     * @param buckets The number of buckets in the wheel, rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public WheelTimer(String name, long tickMillis, int buckets) {
+        this.tickMillis = tickMillis;
+
+        int size = Integer.highestOneBit(Math.max(1, buckets - 1)) << 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a task after roughly the given delay
+     *
+     * @param task The task to run
+     * @param delay The delay before running
+     * @param unit The unit of the delay
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        // Always at least one tick ahead so we never add to the bucket being run
+        long ticks = Math.max(1, unit.toMillis(delay) / tickMillis) + 1;
+        long deadline = tick + ticks;
+        wheel[(int) (deadline & mask)].add(new Task(task, deadline));
+    }
+
+    private void advance() {
+        long current = ++tick;
+
+        Iterator<Task> iterator = wheel[(int) (current & mask)].iterator();
+        while (iterator.hasNext()) {
+            Task task = iterator.next();
+
+            // Tasks further out than one turn of the wheel stay until their turn comes
+            if (task.deadline() > current) {
+                continue;
+            }
+
+            iterator.remove();
+            try {
+                task.runnable().run();
+            } catch (Throwable ignored) {
+                // Don't let one bad task stop the timer
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Task(Runnable runnable, long deadline) {
+    }
+}
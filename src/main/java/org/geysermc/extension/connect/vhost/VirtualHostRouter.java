@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2019-2024 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.extension.connect.vhost;
+
+import org.geysermc.extension.connect.config.VirtualHostSection;
+import org.geysermc.extension.connect.jfr.VirtualHostEvent;
+import org.geysermc.extension.connect.utils.Server;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes virtual host addresses such as {@code hypixel.net._p25565._o.example.com} to the server they point at.
+ * <p>
+ * The configured domains are stored in a trie of reversed labels so the suffix of an address
+ * can be matched label by label without building any patterns or substrings. The target
+ * part is then parsed in a single pass and the result cached for repeat joins.
+ */
+public class VirtualHostRouter {
+    /**
+     * The longest address we will try to route, a full domain name plus a port
+     */
+    public static final int MAX_ADDRESS_LENGTH = 253 + 6;
+
+    private static final int MAX_CACHE_SIZE = 4096;
+
+    private final boolean enabled;
+    private final Node root = new Node();
+    private final Map<String, Route> cache = new ConcurrentHashMap<>();
+
+    private VirtualHostRouter(boolean enabled, List<String> domains) {
+        this.enabled = enabled;
+
+        if (domains != null) {
+            for (String domain : domains) {
+                addDomain(domain);
+            }
+        }
+    }
+
+    public static VirtualHostRouter of(VirtualHostSection section) {
+        if (section == null) {
+            return new VirtualHostRouter(false, null);
+        }
+
+        return new VirtualHostRouter(section.enabled(), section.domains());
+    }
+
+    private void addDomain(String domain) {
+        String[] labels = domain.strip().toLowerCase(Locale.ROOT).split("\\.");
+
+        Node node = root;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (labels[i].isEmpty()) {
+                continue;
+            }
+
+            node = node.getOrCreate(labels[i]);
+        }
+
+        if (node != root) {
+            node.terminal = true;
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Work out where a player connecting with the given address should be sent
+     *
+     * @param address The address the client connected with, optionally with a port
+     * @return The route for the address, never null
+     */
+    public Route route(String address) {
+        if (!enabled || address == null || address.length() > MAX_ADDRESS_LENGTH) {
+            return Route.NONE;
+        }
+
+        VirtualHostEvent event = new VirtualHostEvent();
+        event.begin();
+
+        Route route = cache.get(address);
+        boolean cached = route != null;
+        if (route == null) {
+            route = resolve(address);
+
+            // The cache is only a shortcut for repeat joins, so start over rather than track usage
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put(address, route);
+        }
+
+        if (event.shouldCommit()) {
+            event.address = address;
+            event.result = route.type().name();
+            event.target = route.server() != null ? route.server().address() + ":" + route.server().port() : null;
+            event.cached = cached;
+            event.commit();
+        }
+
+        return route;
+    }
+
+    private Route resolve(String address) {
+        int start = 0;
+        int end = address.length();
+
+        // Trim whitespace
+        while (start < end && Character.isWhitespace(address.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(address.charAt(end - 1))) {
+            end--;
+        }
+
+        // Drop the port the client connected on
+        int colon = address.lastIndexOf(':', end - 1);
+        if (colon >= start) {
+            for (int i = colon + 1; i < end; i++) {
+                if (!isDigit(address.charAt(i))) {
+                    return Route.NONE;
+                }
+            }
+            end = colon;
+        }
+
+        int targetEnd = matchDomain(address, start, end);
+        if (targetEnd <= start) {
+            // Either no domain matched or they connected to the domain itself
+            return Route.NONE;
+        }
+
+        return parseTarget(address, start, targetEnd);
+    }
+
+    /**
+     * Find the longest configured domain that the host ends with
+     *
+     * @return The index of the dot before the matched domain, or -1 if nothing matched
+     */
+    private int matchDomain(String address, int start, int end) {
+        Node node = root;
+        int matched = -1;
+
+        int labelEnd = end;
+        while (labelEnd > start) {
+            int dot = address.lastIndexOf('.', labelEnd - 1);
+            int labelStart = dot < start ? start : dot + 1;
+
+            node = node.child(address, labelStart, labelEnd - labelStart);
+            if (node == null) {
+                break;
+            }
+
+            if (node.terminal) {
+                matched = labelStart == start ? start : dot;
+            }
+
+            if (dot < start) {
+                break;
+            }
+            labelEnd = dot;
+        }
+
+        return matched;
+    }
+
+    /**
+     * Parse the {@code address._p<port>._o} part of a virtual host in a single pass
+     */
+    private Route parseTarget(String address, int start, int end) {
+        int addressEnd = address.indexOf("._", start);
+        if (addressEnd == -1 || addressEnd >= end) {
+            addressEnd = end;
+        }
+
+        // They didn't specify an address
+        if (addressEnd == start || address.charAt(start) == '_') {
+            return Route.INVALID;
+        }
+
+        int port = 25565;
+        boolean online = true;
+
+        int tokenStart = addressEnd;
+        while (tokenStart < end) {
+            // Skip the '._' separator
+            tokenStart += 2;
+
+            int tokenEnd = address.indexOf("._", tokenStart);
+            if (tokenEnd == -1 || tokenEnd > end) {
+                tokenEnd = end;
+            }
+
+            if (tokenStart < tokenEnd) {
+                char type = address.charAt(tokenStart);
+                if (type == 'p') {
+                    port = parsePort(address, tokenStart + 1, tokenEnd);
+                    if (port == -1) {
+                        return Route.INVALID;
+                    }
+                } else if (type == 'o') {
+                    online = false;
+                }
+            }
+
+            tokenStart = tokenEnd;
+        }
+
+        String target = address.substring(start, addressEnd);
+        return new Route(Route.Type.TARGET, new Server(target, port, online, false, null, null, null));
+    }
+
+    private static int parsePort(String address, int start, int end) {
+        if (start == end || end - start > 5) {
+            return -1;
+        }
+
+        int port = 0;
+        for (int i = start; i < end; i++) {
+            char c = address.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            port = port * 10 + (c - '0');
+        }
+
+        return port > 0 && port <= 65535 ? port : -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * The result of routing an address
+     *
+     * @param type If the address was a virtual host and if it was valid
+     * @param server The server to send the player to when the type is {@link Type#TARGET}
+     */
+    public record Route(Type type, Server server) {
+        public static final Route NONE = new Route(Type.NONE, null);
+        public static final Route INVALID = new Route(Type.INVALID, null);
+
+        public enum Type {
+            /**
+             * Not a virtual host, show the normal menu
+             */
+            NONE,
+            /**
+             * A virtual host that doesn't point anywhere usable
+             */
+            INVALID,
+            /**
+             * A virtual host pointing at a server
+             */
+            TARGET
+        }
+    }
+
+    private static class Node {
+        private String[] labels = new String[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        private Node child(String address, int offset, int length) {
+            for (int i = 0; i < labels.length; i++) {
+                String label = labels[i];
+                if (label.length() == length && label.regionMatches(true, 0, address, offset, length)) {
+                    return children[i];
+                }
+            }
+
+            return null;
+        }
+
+        private Node getOrCreate(String label) {
+            Node child = child(label, 0, label.length());
+            if (child != null) {
+                return child;
+            }
+
+            child = new Node();
+
+            String[] newLabels = new String[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, labels.length);
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            newLabels[labels.length] = label;
+            newChildren[children.length] = child;
+
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+    }
+}